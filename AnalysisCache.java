@@ -0,0 +1,185 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// On-disk store of finished analyses: best move, value and depth per
+// position (hash with side to move), kept across runs
+// <base>.log is append-only; each record replaces earlier ones for its key.
+// <base>.idx is a memory-mapped open-addressing table from key to the latest
+// record's offset in the log. It is only an accelerator: if it is missing
+// or behind the log, the missing records are replayed from the log.
+//
+// Log record (16 bytes): key (8), value (4), move (2, as OpeningBook), depth (1), unused (1)
+// Index: header (magic, capacity, count, log length covered), then 16-byte
+// slots of key (8) and log offset + 1 (8, 0 when empty)
+public class AnalysisCache {
+
+    public static final int RECORD_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final int HEADER_SIZE = 32;
+    private static final long MAGIC = 0x414e414c43414348L;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final String indexName;
+    private final RandomAccessFile logFile;
+    private final FileChannel log;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int count;
+
+    public AnalysisCache(String base) throws IOException {
+        this.indexName = base + ".idx";
+        this.logFile = new RandomAccessFile(base + ".log", "rw");
+        this.log = logFile.getChannel();
+        // Drop a record cut short by a crash
+        long logLength = log.size() - log.size() % RECORD_SIZE;
+        log.truncate(logLength);
+
+        long covered = openIndex();
+        if (covered > logLength) {
+            // Index belongs to some other log
+            createIndex(INITIAL_CAPACITY);
+            covered = 0;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (long offset = covered; offset < logLength; offset += RECORD_SIZE) {
+            record.clear();
+            log.read(record, offset);
+            put(record.getLong(0), offset);
+        }
+        index.putLong(24, logLength);
+    }
+
+    // Maps an existing index; returns the log length it covers (0 if new)
+    private long openIndex() throws IOException {
+        File file = new File(indexName);
+        if (file.exists() && file.length() >= HEADER_SIZE) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+                int cap = mapped.getInt(8);
+                if (mapped.getLong(0) == MAGIC && Integer.bitCount(cap) == 1
+                        && raf.length() == HEADER_SIZE + (long) cap * SLOT_SIZE) {
+                    index = mapped;
+                    capacity = cap;
+                    count = mapped.getInt(12);
+                    return mapped.getLong(24);
+                }
+            }
+        }
+        createIndex(INITIAL_CAPACITY);
+        return 0;
+    }
+
+    private void createIndex(int cap) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexName, "rw")) {
+            raf.setLength(0);
+            raf.setLength(HEADER_SIZE + (long) cap * SLOT_SIZE);
+            index = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        capacity = cap;
+        count = 0;
+        index.putLong(0, MAGIC);
+        index.putInt(8, capacity);
+        index.putInt(12, count);
+        index.putLong(24, 0);
+    }
+
+    private int slotOf(long key) {
+        // Zobrist keys are already well mixed
+        return (int) (key ^ (key >>> 32)) & (capacity - 1);
+    }
+
+    // Log offset of key's latest record, or -1
+    private long find(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & (capacity - 1)) {
+            long pos = HEADER_SIZE + (long) slot * SLOT_SIZE;
+            long stored = index.getLong((int) pos + 8);
+            if (stored == 0) return -1;
+            if (index.getLong((int) pos) == key) return stored - 1;
+        }
+    }
+
+    private void put(long key, long offset) throws IOException {
+        // Keep the table at most half full
+        if ((count + 1) * 2 > capacity) {
+            grow();
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & (capacity - 1)) {
+            int pos = HEADER_SIZE + slot * SLOT_SIZE;
+            long stored = index.getLong(pos + 8);
+            if (stored == 0) {
+                index.putLong(pos, key);
+                count++;
+                index.putInt(12, count);
+            } else if (index.getLong(pos) != key) {
+                continue;
+            }
+            index.putLong(pos + 8, offset + 1);
+            return;
+        }
+    }
+
+    private void grow() throws IOException {
+        int oldCapacity = capacity;
+        long[] keys = new long[count];
+        long[] offsets = new long[count];
+        int n = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int pos = HEADER_SIZE + slot * SLOT_SIZE;
+            long stored = index.getLong(pos + 8);
+            if (stored != 0) {
+                keys[n] = index.getLong(pos);
+                offsets[n++] = stored - 1;
+            }
+        }
+        long covered = index.getLong(24);
+        createIndex(oldCapacity * 2);
+        for (int i = 0; i < n; i++) {
+            put(keys[i], offsets[i]);
+        }
+        index.putLong(24, covered);
+    }
+
+    // Stored analysis of key as value << 32 | move << 16 | depth << 8 | 1,
+    // or 0 if the position was never analysed
+    public long probe(long key) throws IOException {
+        long offset = find(key);
+        if (offset < 0) return 0L;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        log.read(record, offset);
+        if (record.getLong(0) != key) return 0L;
+        return ((long) record.getInt(8) << 32) | ((record.getShort(12) & 0xFFFFL) << 16)
+            | ((record.get(14) & 0xFFL) << 8) | 1;
+    }
+
+    public static int value(long data) { return (int) (data >> 32); }
+    public static int move(long data) { return (int) (data >>> 16) & 0xFFFF; }
+    public static int depth(long data) { return (int) (data >>> 8) & 0xFF; }
+
+    // Records an analysis unless one at least as deep is already stored
+    public void store(long key, int move, int value, int depth) throws IOException {
+        long existing = probe(key);
+        if (existing != 0L && depth(existing) >= depth) return;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(0, key);
+        record.putInt(8, value);
+        record.putShort(12, (short) move);
+        record.put(14, (byte) Math.min(depth, 255));
+        long offset = log.size();
+        log.write(record, offset);
+        put(key, offset);
+        index.putLong(24, offset + RECORD_SIZE);
+    }
+
+    public int size() { return count; }
+
+    // Flushes the log and index to disk
+    public void close() throws IOException {
+        log.force(false);
+        index.force();
+        logFile.close();
+    }
+}
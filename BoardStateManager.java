@@ -7,6 +7,9 @@ import java.util.HashMap;
 import java.lang.Math;
 import java.lang.Character;
 import java.util.Collections;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 
 public class BoardStateManager
 {  
@@ -24,6 +27,78 @@ public class BoardStateManager
         put('_', 0);
     }};;
 
+    // Piece values are in whatever unit the table uses (whole pawns by
+    // default, centipawns from TexelTuner); the pawn's value is the unit.
+    // Code that needs pawns (rather than just comparing values) converts
+    public static double pawns(int value) {
+        return value / (double) pieceVal.get('p');
+    }
+
+    // Replaces piece values from a table written by TexelTuner
+    // Lines are "<piece> <value>"; '#' starts a comment
+    public static void loadPieceValues(String filename) throws IOException {
+        HashMap<Character, Integer> values = new HashMap<>(pieceVal);
+        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2 || parts[0].length() != 1 || "pnbrq".indexOf(parts[0].charAt(0)) < 0) {
+                    throw new IOException(filename + ": bad line \"" + line + "\"");
+                }
+                int value = Integer.parseInt(parts[1]);
+                if (value <= 0) {
+                    throw new IOException(filename + ": piece values must be positive");
+                }
+                values.put(parts[0].charAt(0), value);
+            }
+        }
+        pieceVal.putAll(values);
+    }
+
+    // Resolve captures past the cut-off depth instead of stopping mid-exchange
+    public boolean quiescence = false;
+
+    // Value used for kings in exchange evaluation (they can capture, but
+    // must never be the piece that gets taken); well above any tuned table
+    public static final int KING_VALUE = 100000;
+
+    // Move to try first at the root when the TT has none (e.g. from an
+    // earlier, shallower analysis); OpeningBook encoding, 0 for none
+    public int rootMoveHint = 0;
+
+    // Neural network evaluation at the leaves (null: material)
+    public Nnue nnue = null;
+
+    // Per-ply counters; only updated when SearchStats.ENABLED
+    public SearchStats stats = new SearchStats();
+
+    // Endgame tables probed during search (null if not in use)
+    public Tablebase tablebase = null;
+    // Tablebase usage, for metrics
+    public long tbProbes = 0;
+    public long tbHits = 0;
+
+    // Shared transposition table (null if not in use)
+    public TranspositionTable tt = null;
+    // Table usage, for metrics
+    public long ttProbes = 0;
+    public long ttHits = 0;
+
+    // Search limits (numStates to stop at, System.nanoTime() deadline)
+    // Once one is passed the search unwinds without finishing and its result
+    // must not be used; see isAborted()
+    public long nodeLimit = Long.MAX_VALUE;
+    public long deadline = Long.MAX_VALUE;
+    private boolean aborted = false;
+
+    // Treat repeated positions and 50 moves without progress as draws
+    public boolean repetitionDetection = true;
+    // Position hashes along the current search path, root first
+    private long[] history = new long[64];
+    private int historySize = 0;
+
     // Full set of unit directions for all piece types
     public HashMap<String, ArrayList<int[]>> unitDirections;
 
@@ -65,6 +140,22 @@ public class BoardStateManager
         return unitDirections;
     }
 
+    // A state's score is the root's material balance plus every capture on
+    // the way, so score + material on the board is the same for the whole
+    // tree. Plain leaf values (and the table entries built from them) shift
+    // with it, so two searches can only share entries if their offsets match
+    public static int scoreOffset(State state) {
+        int offset = state.getScore();
+        for (char[] row : state.getBoard()) {
+            for (char piece : row) {
+                if (Character.toLowerCase(piece) != 'k') {
+                    offset += pieceVal.get(Character.toLowerCase(piece));
+                }
+            }
+        }
+        return offset;
+    }
+
     // Computes the sum of the pieces on the board
     public double computeScore(ArrayList<ArrayList<String>> board) 
     {
@@ -85,7 +176,137 @@ public class BoardStateManager
     // Returns an instance of wrapper class that contains optimal state info
     // Takes a specifed search strategy as param 
     public NegamaxWrapper negamax(State state, int depth, int alpha, int beta, int color, String strat) {
+        EngineEvents.SearchIteration event = new EngineEvents.SearchIteration();
+        event.begin();
+        long startNodes = numStates;
+        aborted = false;
+        if (tt != null) {
+            tt.setScoreOffset(scoreOffset(state));
+        }
+        NegamaxWrapper result = negamax(state, depth, alpha, beta, color, strat, 0);
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.strategy = strat;
+            event.value = result.getValue();
+            event.nodes = numStates - startNodes;
+            event.commit();
+        }
+        return result;
+    }
+
+    // Recursive search; ply is the distance from the root
+    // With stats on, also times each ply (subtree included)
+    private NegamaxWrapper negamax(State state, int depth, int alpha, int beta, int color, String strat, int ply) {
+        if (ply > 0 && outOfBudget()) {
+            return new NegamaxWrapper(state, 0);
+        }
+        if (!SearchStats.ENABLED) {
+            return checkHistory(state, depth, alpha, beta, color, strat, ply);
+        }
+        long start = System.nanoTime();
+        try {
+            return checkHistory(state, depth, alpha, beta, color, strat, ply);
+        } finally {
+            stats.nanos[SearchStats.slot(ply)] += System.nanoTime() - start;
+        }
+    }
+
+    // True if the last search hit nodeLimit or deadline before finishing
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private boolean outOfBudget() {
+        if (!aborted && (numStates >= nodeLimit
+            || (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    // Keeps the path history for repetition detection around searchNode
+    private NegamaxWrapper checkHistory(State state, int depth, int alpha, int beta, int color, String strat, int ply) {
+        if (!repetitionDetection) {
+            return searchNode(state, depth, alpha, beta, color, strat, ply);
+        }
         String currColor = (color == 1) ? "white" : "black";
+        long key = state.getHash(currColor);
+
+        // A position seen before on this path (or 50 moves without progress)
+        // is a draw; nothing more to search
+        if (ply > 0 && (state.getHalfmoveClock() >= 100 || isRepetition(key, state.getHalfmoveClock()))) {
+            if (SearchStats.ENABLED) {
+                stats.nodes[SearchStats.slot(ply)]++;
+                stats.leaves[SearchStats.slot(ply)]++;
+            }
+            return new NegamaxWrapper(state, 0);
+        }
+
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+        }
+        history[historySize++] = key;
+        try {
+            return searchNode(state, depth, alpha, beta, color, strat, ply);
+        } finally {
+            historySize--;
+        }
+    }
+
+    // Two-fold repetition: the same position with the same side to move
+    // earlier on the path. Only every other entry can match, and nothing
+    // before the last capture or pawn move can.
+    private boolean isRepetition(long key, int halfmoveClock) {
+        int stop = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 2; i >= stop; i -= 2) {
+            if (history[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Searches one node of the tree
+    private NegamaxWrapper searchNode(State state, int depth, int alpha, int beta, int color, String strat, int ply) {
+        String currColor = (color == 1) ? "white" : "black";
+        if (SearchStats.ENABLED) {
+            stats.nodes[SearchStats.slot(ply)]++;
+        }
+
+        // Look the position up before generating any moves
+        // Bounds stored by this search can end the node early (except at the
+        // root, which must hand back a move); otherwise the stored move is
+        // tried first
+        long hash = 0L;
+        int ttMove = 0;
+        int alphaOrig = alpha;
+        if (tt != null && depth > 0) {
+            hash = state.getHash(currColor);
+            ttProbes++;
+            long entry = tt.probe(hash);
+            if (entry != 0L) {
+                ttHits++;
+                if (SearchStats.ENABLED) {
+                    stats.ttHits[SearchStats.slot(ply)]++;
+                }
+                ttMove = TranspositionTable.move(entry);
+                int ttValue = TranspositionTable.value(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (ply > 0 && tt.isCurrent(entry) && TranspositionTable.depth(entry) >= depth
+                    && (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && ttValue >= beta)
+                        || (bound == TranspositionTable.UPPER && ttValue <= alpha))) {
+                    if (SearchStats.ENABLED) {
+                        stats.leaves[SearchStats.slot(ply)]++;
+                    }
+                    return new NegamaxWrapper(state, ttValue);
+                }
+            }
+        }
+
+        if (ttMove == 0 && ply == 0) {
+            ttMove = rootMoveHint;
+        }
 
         // List of locations of pieces checking king
         ArrayList<int[]> checkList = new ArrayList<>();
@@ -96,29 +317,46 @@ public class BoardStateManager
         // If the cut-off depth is reached..
         if(depth == 0)
         {   // Return current state
+            if (SearchStats.ENABLED) {
+                stats.leaves[SearchStats.slot(ply)]++;
+            }
+            if (quiescence) {
+                return new NegamaxWrapper(state, quiesce(state, successors, checkList, alpha, beta, color, ply));
+            }
+            if (nnue != null) {
+                return new NegamaxWrapper(state, nnue.evaluate(state, currColor));
+            }
             NegamaxWrapper toReturn = new NegamaxWrapper(state, state.getScore());
             return toReturn;
         }   // If no successors are generated and something is checking king
             // The king is checkmated; return state with very "high" score
         if (successors.isEmpty() && !checkList.isEmpty()) {
+            if (SearchStats.ENABLED) {
+                stats.leaves[SearchStats.slot(ply)]++;
+            }
             NegamaxWrapper toReturn = new NegamaxWrapper(state, -10000000);
             return toReturn;
             // Handles stalemate 
         } else if(successors.isEmpty() && checkList.isEmpty()) {
+            if (SearchStats.ENABLED) {
+                stats.leaves[SearchStats.slot(ply)]++;
+            }
             NegamaxWrapper toReturn = new NegamaxWrapper(state, 0);
             return toReturn;
         }
         
 
-        // Visit the successors that are worse for opponent first
-        if(strat.equals("reverse")) {
-            Collections.sort(successors); 
-        // Visit successors best for you first 
-        }else if(strat.equals("sorted")) {
-            Collections.sort(successors, Collections.reverseOrder());
-        // Visit in random order
-        }else if(strat.equals("random")) {
-            Collections.shuffle(successors);
+        orderSuccessors(state, successors, strat);
+
+        // The table's best move goes ahead of everything else
+        if (ttMove != 0) {
+            int[] move = OpeningBook.decodeMove(ttMove);
+            for (int i = 0; i < successors.size(); i++) {
+                if (Arrays.equals(computeMove(state, successors.get(i)), move)) {
+                    successors.add(0, successors.remove(i));
+                    break;
+                }
+            }
         }
 
         // Sets value to -"infinity"
@@ -128,9 +366,38 @@ public class BoardStateManager
         NegamaxWrapper wrappedState;
         // Iterate through successors
         for (int i = 0; i < successors.size(); i++) {
-            wrappedState = negamax(successors.get(i), depth-1, -beta, -alpha, -color, strat);
+            // Root moves are traced individually in flight recordings
+            EngineEvents.RootMove rootEvent = null;
+            long startNodes = numStates;
+            if (ply == 0) {
+                rootEvent = new EngineEvents.RootMove();
+                rootEvent.begin();
+            }
+
+            // Few-piece endgames have exact answers; no need to search them
+            boolean inTable = false;
+            if (tablebase != null && Tablebase.countPieces(successors.get(i).getBoard()) <= Tablebase.MAX_PIECES) {
+                tbProbes++;
+                inTable = tablebase.covers(successors.get(i));
+            }
+
+            int value2;
+            if (inTable) {
+                tbHits++;
+                value2 = -tablebase.probe(successors.get(i), color == 1 ? "black" : "white");
+            } else {
+                wrappedState = negamax(successors.get(i), depth-1, -beta, -alpha, -color, strat, ply+1);
+                value2 = -wrappedState.getValue();
+            }
+
+            if (rootEvent != null && rootEvent.shouldCommit()) {
+                rootEvent.move = EngineEvents.formatMove(computeMove(state, successors.get(i)));
+                rootEvent.depth = depth;
+                rootEvent.value = value2;
+                rootEvent.nodes = numStates - startNodes;
+                rootEvent.commit();
+            }
             // Compares values
-            int value2 = -wrappedState.getValue();
             if (value2 > value) {
                 value = value2;
                 idxOfBestState = i;
@@ -138,16 +405,357 @@ public class BoardStateManager
             // Updates alpha 
             alpha = (int) Math.max(alpha, value);
             if(alpha >= beta) {
+                if (SearchStats.ENABLED) {
+                    stats.betaCutoffs[SearchStats.slot(ply)]++;
+                    if (i == 0) stats.firstMoveCutoffs[SearchStats.slot(ply)]++;
+                }
                 break; //prune
             }
         }
 
+        // An unfinished search's values are made up; keep them out of the table
+        if (tt != null && !aborted) {
+            int bound = value <= alphaOrig ? TranspositionTable.UPPER
+                : value >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            tt.store(hash, value, OpeningBook.encodeMove(computeMove(state, successors.get(idxOfBestState))),
+                depth, bound);
+        }
+
         // Returns the optimal state 
         NegamaxWrapper toReturn = new NegamaxWrapper(successors.get(idxOfBestState), value);
 
         return toReturn;
     }
 
+    // Orders successors according to the search strategy
+    public void orderSuccessors(State state, ArrayList<State> successors, String strat) {
+        // Visit the successors that are worse for opponent first
+        if(strat.equals("reverse")) {
+            Collections.sort(successors); 
+        // Visit successors best for you first 
+        }else if(strat.equals("sorted")) {
+            Collections.sort(successors, Collections.reverseOrder());
+        // Same as sorted, but captures that lose material by SEE go last
+        }else if(strat.equals("see")) {
+            Collections.sort(successors, Collections.reverseOrder());
+            orderCaptures(state, successors);
+        // Visit in random order
+        }else if(strat.equals("random")) {
+            Collections.shuffle(successors);
+        }
+    }
+
+    // Multi-PV search: returns the best numPV root moves, best first, each with
+    // its score and principal variation
+    // Iterative deepening runs depths 1..maxDepth; every line and depth shares
+    // the transposition table, and each depth tries root moves in the order
+    // the previous one ranked them. Only the current top numPV need exact
+    // scores, so the rest are searched against the Nth best score as alpha.
+    public ArrayList<PVLine> multiPV(State state, int maxDepth, int color, String strat, int numPV) {
+        if (tt == null) {
+            tt = new TranspositionTable(16);
+        }
+        tt.setScoreOffset(scoreOffset(state));
+        String currColor = (color == 1) ? "white" : "black";
+        ArrayList<State> rootMoves = computeAllStates(state, currColor, new ArrayList<>());
+        orderSuccessors(state, rootMoves, strat);
+        // As in negamax: a hinted move goes first at depth 1
+        if (rootMoveHint != 0) {
+            int[] hint = OpeningBook.decodeMove(rootMoveHint);
+            for (int i = 0; i < rootMoves.size(); i++) {
+                if (Arrays.equals(computeMove(state, rootMoves.get(i)), hint)) {
+                    rootMoves.add(0, rootMoves.remove(i));
+                    break;
+                }
+            }
+        }
+
+        // Root moves are searched from ply 1, so the root must be on the
+        // path for lines that return to it to count as repetitions
+        if (repetitionDetection) {
+            if (historySize == history.length) {
+                history = Arrays.copyOf(history, history.length * 2);
+            }
+            history[historySize++] = state.getHash(currColor);
+        }
+        try {
+            return multiPVLines(state, rootMoves, maxDepth, color, strat, numPV);
+        } finally {
+            if (repetitionDetection) {
+                historySize--;
+            }
+        }
+    }
+
+    // Iterative deepening over the ordered root moves for multiPV
+    private ArrayList<PVLine> multiPVLines(State state, ArrayList<State> rootMoves, int maxDepth, int color,
+        String strat, int numPV) {
+        String currColor = (color == 1) ? "white" : "black";
+        ArrayList<PVLine> lines = new ArrayList<>();
+        for (int depth = 1; depth <= maxDepth && !rootMoves.isEmpty(); depth++) {
+            EngineEvents.SearchIteration event = new EngineEvents.SearchIteration();
+            event.begin();
+            long startNodes = numStates;
+            long startNanos = System.nanoTime();
+
+            ArrayList<PVLine> best = new ArrayList<>();
+            for (State move : rootMoves) {
+                int alpha = best.size() < numPV ? Integer.MAX_VALUE * -1 : best.get(numPV - 1).getValue();
+                int value = -negamax(move, depth - 1, Integer.MAX_VALUE * -1, -alpha, -color, strat, 1).getValue();
+                if (best.size() < numPV || value > alpha) {
+                    int pos = 0;
+                    while (pos < best.size() && best.get(pos).getValue() >= value) pos++;
+                    best.add(pos, new PVLine(move, value));
+                    if (best.size() > numPV) best.remove(numPV);
+                }
+            }
+            lines = best;
+
+            // Next depth starts with this depth's lines, in rank order
+            for (int i = lines.size() - 1; i >= 0; i--) {
+                rootMoves.remove(lines.get(i).getState());
+                rootMoves.add(0, lines.get(i).getState());
+            }
+
+            if (SearchStats.ENABLED) {
+                stats.recordIteration(depth, numStates - startNodes, System.nanoTime() - startNanos);
+            }
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.strategy = strat;
+                event.value = lines.get(0).getValue();
+                event.nodes = numStates - startNodes;
+                event.commit();
+            }
+        }
+
+        for (PVLine line : lines) {
+            line.setPV(principalVariation(line.getState(), currColor.equals("white") ? "black" : "white", maxDepth));
+        }
+        return lines;
+    }
+
+    // Follows best moves stored in the transposition table from a state
+    public ArrayList<State> principalVariation(State state, String sideToMove, int maxLength) {
+        ArrayList<State> pv = new ArrayList<>();
+        pv.add(state);
+        State current = state;
+        String side = sideToMove;
+        while (pv.size() < maxLength) {
+            long entry = tt.probe(Zobrist.hash(current.getBoard(), side));
+            if (entry == 0L || TranspositionTable.move(entry) == 0) break;
+            State next = findSuccessor(current, side, OpeningBook.decodeMove(TranspositionTable.move(entry)));
+            if (next == null) break;
+            pv.add(next);
+            current = next;
+            side = side.equals("white") ? "black" : "white";
+        }
+        return pv;
+    }
+
+    // Capture-only search below the cut-off depth
+    // Stands pat on the material balance; losing captures (by SEE) are pruned
+    private int quiesce(State state, ArrayList<State> successors, ArrayList<int[]> checkList,
+        int alpha, int beta, int color, int ply) {
+        String currColor = (color == 1) ? "white" : "black";
+        char[][] board = state.getBoard();
+
+        if (successors.isEmpty()) {
+            return checkList.isEmpty() ? 0 : -10000000;
+        }
+
+        // In check every evasion is searched; otherwise only captures
+        boolean inCheck = !checkList.isEmpty();
+        int value = Integer.MAX_VALUE * -1;
+        if (!inCheck) {
+            value = nnue != null ? nnue.evaluate(state, currColor) : materialBalance(board, currColor);
+            if (value >= beta) {
+                return value;
+            }
+            alpha = Math.max(alpha, value);
+
+            ArrayList<State> captures = new ArrayList<>();
+            for (State successor : successors) {
+                int[] move = computeMove(state, successor);
+                if (board[move[2]][move[3]] != '_' && staticExchange(board, move) >= 0) {
+                    captures.add(successor);
+                }
+            }
+            orderCaptures(state, captures);
+            successors = captures;
+        }
+
+        for (State successor : successors) {
+            if (SearchStats.ENABLED) {
+                stats.qnodes[SearchStats.slot(ply + 1)]++;
+            }
+            ArrayList<int[]> childChecks = new ArrayList<>();
+            ArrayList<State> childSuccessors = computeAllStates(successor, currColor.equals("white") ? "black" : "white",
+                childChecks);
+            int value2 = -quiesce(successor, childSuccessors, childChecks, -beta, -alpha, -color, ply + 1);
+            value = Math.max(value, value2);
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    // Material of the given side minus the opponent's
+    public int materialBalance(char[][] board, String color) {
+        int balance = 0;
+        for (int i = 0; i < ChessAI.BOARD_SIZE; i++) {
+            for (int j = 0; j < ChessAI.BOARD_SIZE; j++) {
+                char piece = board[i][j];
+                if (piece == '_' || Character.toLowerCase(piece) == 'k') continue;
+                int val = pieceVal.get(Character.toLowerCase(piece));
+                balance += (Character.isLowerCase(piece) == color.equals("white")) ? val : -val;
+            }
+        }
+        return balance;
+    }
+
+    // Reorders successors so captures that don't lose material (by SEE) come
+    // first and losing captures come last, worst last
+    // Within each group the incoming order (e.g. by score) is kept
+    public void orderCaptures(State state, ArrayList<State> successors) {
+        char[][] board = state.getBoard();
+        ArrayList<State> good = new ArrayList<>();
+        ArrayList<State> losing = new ArrayList<>();
+        ArrayList<State> rest = new ArrayList<>();
+        HashMap<State, Integer> see = new HashMap<>();
+        for (State successor : successors) {
+            int[] move = computeMove(state, successor);
+            if (board[move[2]][move[3]] == '_') {
+                rest.add(successor);
+                continue;
+            }
+            int gain = staticExchange(board, move);
+            if (gain >= 0) {
+                good.add(successor);
+            } else {
+                see.put(successor, gain);
+                losing.add(successor);
+            }
+        }
+        Collections.sort(losing, (a, b) -> see.get(b) - see.get(a));
+        successors.clear();
+        successors.addAll(good);
+        successors.addAll(rest);
+        successors.addAll(losing);
+    }
+
+    // Exchange value of a piece for SEE
+    private static int exchangeValue(char piece) {
+        char lower = Character.toLowerCase(piece);
+        return lower == 'k' ? KING_VALUE : pieceVal.get(lower);
+    }
+
+    // Static Exchange Evaluation: material the mover nets if both sides keep
+    // recapturing on the target square with their least valuable attacker
+    // (and may stop whenever continuing would lose material)
+    // move is {fromRow, fromCol, toRow, toCol}
+    public int staticExchange(char[][] board, int[] move) {
+        char[][] work = new char[ChessAI.BOARD_SIZE][];
+        for (int i = 0; i < ChessAI.BOARD_SIZE; i++) {
+            work[i] = board[i].clone();
+        }
+        int[] target = new int[]{move[2], move[3]};
+        int[] gain = new int[32];
+        int d = 0;
+
+        char attacker = work[move[0]][move[1]];
+        gain[0] = exchangeValue(work[target[0]][target[1]]);
+        work[target[0]][target[1]] = attacker;
+        work[move[0]][move[1]] = '_';
+        boolean white = !Character.isLowerCase(attacker);
+
+        while (true) {
+            // Removing each attacker from its square uncovers any x-ray behind it
+            int[] from = leastValuableAttacker(work, target, white);
+            if (from == null) break;
+            d++;
+            gain[d] = exchangeValue(attacker) - gain[d - 1];
+            // A king may only recapture if nothing can take it back
+            attacker = work[from[0]][from[1]];
+            work[target[0]][target[1]] = attacker;
+            work[from[0]][from[1]] = '_';
+            if (Character.toLowerCase(attacker) == 'k' && leastValuableAttacker(work, target, !white) != null) {
+                d--;
+                break;
+            }
+            white = !white;
+        }
+
+        // Either side may decline to continue the exchange
+        while (d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+            d--;
+        }
+        return gain[0];
+    }
+
+    // Cheapest piece of the given color attacking a square; null if none
+    public int[] leastValuableAttacker(char[][] board, int[] target, boolean white) {
+        int[] best = null;
+        int bestValue = Integer.MAX_VALUE;
+        for (int[] pos : attackersTo(board, target, white)) {
+            int val = exchangeValue(board[pos[0]][pos[1]]);
+            if (val < bestValue) {
+                bestValue = val;
+                best = pos;
+            }
+        }
+        return best;
+    }
+
+    // All pieces of the given color attacking a square, kings and pawns included
+    // (isControlled answers "who can move here", which differs for pawns and
+    // skips kings, so exchanges use this direct ray scan instead)
+    public ArrayList<int[]> attackersTo(char[][] board, int[] target, boolean white) {
+        ArrayList<int[]> attackers = new ArrayList<>();
+        for (HashMap.Entry<String, ArrayList<int[]>> entry : unitDirections.entrySet()) {
+            String pieceType = entry.getKey();
+            for (int[] dir : entry.getValue()) {
+                int[] pos = new int[]{target[0] + dir[0], target[1] + dir[1]};
+                int distance = 1;
+                while (inBounds(pos)) {
+                    char piece = board[pos[0]][pos[1]];
+                    if (piece != '_') {
+                        if (Character.isLowerCase(piece) == white && attacksAlong(piece, pieceType, dir, distance)) {
+                            attackers.add(pos);
+                        }
+                        break;
+                    }
+                    if (pieceType.equals("knight")) break;
+                    pos = new int[]{pos[0] + dir[0], pos[1] + dir[1]};
+                    distance++;
+                }
+            }
+        }
+        return attackers;
+    }
+
+    // Whether a piece found along dir (pointing from the target to the piece)
+    // attacks the target
+    private boolean attacksAlong(char piece, String pieceType, int[] dir, int distance) {
+        char lower = Character.toLowerCase(piece);
+        if (pieceType.equals("knight")) {
+            return lower == 'n';
+        }
+        if (lower == 'q') return true;
+        if (lower == 'k') return distance == 1;
+        if (pieceType.equals("grid")) {
+            return lower == 'r';
+        }
+        // White pawns capture downward, so they sit one row above the target
+        if (lower == 'p') {
+            return distance == 1 && (piece == 'p' ? dir[0] == -1 : dir[0] == 1);
+        }
+        return lower == 'b';
+    }
+
     // Wrapper function that calls submethods to compute all successor states 
     // of varying type pieces
     // Returns all successor states from a given state 
@@ -583,10 +1191,61 @@ public class BoardStateManager
         updatedScore = originalState.getScore() + pieceVal.get(Character.toLowerCase(oldBoard[newPos[0]][newPos[1]]));
         String color = Character.isLowerCase(piece) ? "white" : "black";
         State actualState = new State(newState, updatedScore, color, blackKingPos, whiteKingPos);
+
+        // Hash and 50-move counter follow from the parent
+        char captured = oldBoard[newPos[0]][newPos[1]];
+        if (originalState.hasBoardHash()) {
+            actualState.setBoardHash(originalState.getBoardHash()
+                ^ Zobrist.pieceKey(oldBoard[oldPos[0]][oldPos[1]], oldPos[0], oldPos[1])
+                ^ Zobrist.pieceKey(captured, newPos[0], newPos[1])
+                ^ Zobrist.pieceKey(piece, newPos[0], newPos[1]));
+        }
+        // The network's first layer is worked out from the parent's only if
+        // this state is ever evaluated
+        if (nnue != null) {
+            actualState.setNnueParent(originalState,
+                OpeningBook.encodeMove(new int[]{oldPos[0], oldPos[1], newPos[0], newPos[1]}));
+        }
+        boolean irreversible = captured != '_' || Character.toLowerCase(piece) == 'p';
+        actualState.setHalfmoveClock(irreversible ? 0 : originalState.getHalfmoveClock() + 1);
         // Return generated state
         return actualState;
     }
 
+    // Recovers the move between two consecutive states by diffing their boards
+    // Returns {fromRow, fromCol, toRow, toCol}
+    public int[] computeMove(State before, State after) {
+        char[][] oldBoard = before.getBoard();
+        char[][] newBoard = after.getBoard();
+        int[] move = new int[4];
+        for (int i = 0; i < ChessAI.BOARD_SIZE; i++) {
+            for (int j = 0; j < ChessAI.BOARD_SIZE; j++) {
+                if (oldBoard[i][j] == newBoard[i][j]) continue;
+                // The square that was emptied is the origin
+                if (newBoard[i][j] == '_') {
+                    move[0] = i;
+                    move[1] = j;
+                } else {
+                    move[2] = i;
+                    move[3] = j;
+                }
+            }
+        }
+        return move;
+    }
+
+    // Finds the successor reached by the given move, if it is legal
+    // Returns null otherwise
+    public State findSuccessor(State state, String color, int[] move) {
+        ArrayList<State> successors = computeAllStates(state, color, new ArrayList<>());
+        for (State successor : successors) {
+            if (Arrays.equals(computeMove(state, successor), move)) {
+                return successor;
+            }
+        }
+        return null;
+    }
+
     // Helper fior generating states resulting from moving king
     public void nextKingStateHelper(State originalState, ArrayList<State> states, int[] kingPos, String color) {
         char[][] board = originalState.getBoard();
@@ -0,0 +1,64 @@
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+// Builds a Polyglot-format book from a plain text source
+// Each source line: <board.in> <color> <fromRow>,<fromCol> <toRow>,<toCol> <weight>
+// Lines starting with # are comments
+public class BookBuilder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java BookBuilder <source.txt> <book.bin>");
+            System.exit(0);
+        }
+
+        BoardStateManager bm = new BoardStateManager();
+        // Each entry is {key, move, weight}
+        ArrayList<long[]> entries = new ArrayList<>();
+
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                char[][] board = ChessAI.GetBoard(parts[0]);
+                String color = parts[1];
+                String[] from = parts[2].split(",");
+                String[] to = parts[3].split(",");
+                int[] move = new int[]{Integer.parseInt(from[0]), Integer.parseInt(from[1]),
+                    Integer.parseInt(to[0]), Integer.parseInt(to[1])};
+
+                // Reject moves the engine would not generate itself
+                State state = new State(board, 0, color, ChessAI.findPiece(board, 'K'),
+                    ChessAI.findPiece(board, 'k'));
+                if (bm.findSuccessor(state, color, move) == null) {
+                    System.out.println("Skipping illegal move: " + line);
+                    continue;
+                }
+                entries.add(new long[]{Zobrist.bookKey(board, color), OpeningBook.encodeMove(move),
+                    Integer.parseInt(parts[4])});
+            }
+        }
+
+        // Polyglot books are sorted by (unsigned) key
+        Collections.sort(entries, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(args[1])))) {
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeShort((int) entry[1]);
+                out.writeShort((int) entry[2]);
+                out.writeInt(0);
+            }
+        }
+        System.out.println("Wrote " + entries.size() + " entries to " + args[1]);
+    }
+}
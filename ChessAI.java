@@ -1,10 +1,16 @@
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 
 public class ChessAI {
 
     public static final int BOARD_SIZE = 8;
+    // Tree size limit for --mcts
+    public static final int MCTS_NODES = 2000000;
 
     // Generates an ASCII board
     public static char[][] GetBoard(String fileName)
@@ -52,11 +58,33 @@ public class ChessAI {
         return pos;
     }
 
+    // Parses optional "--name value" pairs that follow the positional args
+    public static HashMap<String, String> parseOptions(String[] args, int start) {
+        HashMap<String, String> options = new HashMap<>();
+        for (int i = start; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+            String name = args[i].substring(2);
+            // Flags without a value are stored as "true"
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+
     // Main 
     public static void main(String[] args) throws IOException {
         System.out.println();
-        if (args.length != 4) {
-            System.out.println("Usage: java Chess <inputFile> <color> <strategy> <max_depth>");
+        if (args.length < 4) {
+            System.out.println("Usage: java Chess <inputFile> <color> <strategy> <max_depth> [options]");
+            System.out.println("Options: --book <book.bin>  --tablebase <dir>  --stats <report.json>  --metrics <file>");
+            System.out.println("         --hash <MB>  --hash-load <file>  --hash-save <file>  --quiescence");
+            System.out.println("         --multipv <N>  --no-repetition  --mate <max_nodes>  --mate-plies <N>");
+            System.out.println("         --mcts <time_ms>  --threads <N>  --nnue <network.nnue>");
+            System.out.println("         --piece-values <file>  (default: piece_values.txt if present)");
+            System.out.println("         --workers <host:port,host:port,...>  --cache <base>");
             System.exit(0);
         }
         // Handles input args 
@@ -64,7 +92,15 @@ public class ChessAI {
         String color = args[1];
         String strategy = args[2];
         int maxDepth = Integer.parseInt(args[3]);
+        HashMap<String, String> options = parseOptions(args, 4);
         
+        // Tuned piece values must be in place before any score is computed
+        String pieceValues = options.getOrDefault("piece-values", "piece_values.txt");
+        if (options.containsKey("piece-values") || new File(pieceValues).exists()) {
+            BoardStateManager.loadPieceValues(pieceValues);
+            System.out.println("Piece values from " + pieceValues + ": " + BoardStateManager.pieceVal);
+        }
+
         // Initializes board
         char[][] board = ChessAI.GetBoard(filename);
         System.out.println("Initial state:\n===============");
@@ -78,8 +114,16 @@ public class ChessAI {
         int[] blackKingPos = findPiece(board, 'K');
 
         
+        // Must be set before SearchStats is first loaded
+        if (options.containsKey("stats")) {
+            System.setProperty("chess.stats", "true");
+        }
+
         // Creates instance of chess engine
         BoardStateManager bm = new BoardStateManager();
+        if (options.containsKey("tablebase")) {
+            bm.tablebase = new Tablebase(options.get("tablebase"));
+        }
         // Generates initial state given board, positions of kings;
         // Sets score to 0
         State startState = new State(board, 0, color, blackKingPos, whiteKingPos);
@@ -95,12 +139,206 @@ public class ChessAI {
             negaColor = 1;
         }   
         
+        if (options.containsKey("nnue")) {
+            bm.nnue = new Nnue(options.get("nnue"));
+            System.out.println("NNUE: " + bm.nnue.getHiddenSize() + " hidden neurons, " + bm.nnue.getKernelName());
+        }
+        bm.quiescence = options.containsKey("quiescence");
+        bm.repetitionDetection = !options.containsKey("no-repetition");
+
+        // Transposition table, optionally warmed from an earlier run
+        // A loaded table keeps its generation, so its bounds still count
+        if (options.containsKey("hash") || options.containsKey("hash-load")) {
+            bm.tt = new TranspositionTable(Integer.parseInt(options.getOrDefault("hash", "16")));
+            if (options.containsKey("hash-load")) {
+                bm.tt.load(options.get("hash-load"), BoardStateManager.scoreOffset(startState));
+            } else {
+                bm.tt.newSearch();
+            }
+        }
+
+        // Health counters for flight recordings and (optionally) a Prometheus file
+        EngineMetrics metrics = new EngineMetrics(bm);
+        if (options.containsKey("metrics")) {
+            metrics.startFileExport(options.get("metrics"), 1000);
+        }
+
+        // Known opening positions are answered straight from the book
+        State nextState = null;
+        if (options.containsKey("book")) {
+            OpeningBook book = new OpeningBook(options.get("book"));
+            nextState = book.probe(bm, startState, color);
+            if (nextState != null) {
+                System.out.println("Book move found; skipping search");
+                System.out.println();
+            }
+        }
+
+        // Earlier analyses of this position: one at least max_depth deep is
+        // reused as is, a shallower one only has its move searched first
+        // The cache only holds a best move, so --mate, --mcts and --multipv
+        // still run their own search
+        AnalysisCache cache = null;
+        long cacheKey = startState.getHash(color);
+        if (options.containsKey("cache")) {
+            cache = new AnalysisCache(options.get("cache"));
+            long entry = cache.probe(cacheKey);
+            if (entry != 0L && nextState == null) {
+                int depth = AnalysisCache.depth(entry);
+                int[] move = OpeningBook.decodeMove(AnalysisCache.move(entry));
+                boolean otherMode = options.containsKey("mate") || options.containsKey("mcts")
+                    || options.containsKey("multipv");
+                if (depth >= maxDepth && !otherMode) {
+                    nextState = bm.findSuccessor(startState, color, move);
+                }
+                if (nextState != null) {
+                    System.out.println("Cached result (depth " + depth + ", value " + AnalysisCache.value(entry)
+                        + "); skipping search");
+                } else if (depth >= maxDepth && otherMode) {
+                    bm.rootMoveHint = AnalysisCache.move(entry);
+                    System.out.println("Cached depth " + depth + " result (move " + EngineEvents.formatMove(move)
+                        + ", value " + AnalysisCache.value(entry) + "); searching anyway for --mate/--mcts/--multipv");
+                } else {
+                    bm.rootMoveHint = AnalysisCache.move(entry);
+                    System.out.println("Cached depth " + depth + " result; searching its move first");
+                }
+                System.out.println();
+            }
+        }
+        // Value of a completed max_depth search, for the cache
+        Integer searchedValue = null;
+
         // Run negamax w/ alpha-beta pruning on initial state
-        NegamaxWrapper bestMove = bm.negamax(startState, maxDepth, alpha, beta, negaColor, strategy);
-        State nextState = bestMove.getState();
+        // Puzzle mode: look for a forced mate before any regular search
+        if (nextState == null && options.containsKey("mate")) {
+            MateSolver solver = new MateSolver(bm, Integer.parseInt(options.get("mate")));
+            if (options.containsKey("mate-plies")) {
+                solver.setMaxPly(Integer.parseInt(options.get("mate-plies")));
+            }
+            long startNodes = bm.numStates;
+            if (solver.solve(startState, color)) {
+                ArrayList<State> line = solver.mateLine();
+                StringBuilder moves = new StringBuilder();
+                State prev = startState;
+                for (State s : line) {
+                    moves.append(' ').append(EngineEvents.formatMove(bm.computeMove(prev, s)));
+                    prev = s;
+                }
+                System.out.println("Forced mate in " + (line.size() + 1) / 2 + ":" + moves);
+                nextState = line.get(0);
+            } else if (solver.isDisproven()) {
+                System.out.println("No forced mate within " + options.getOrDefault("mate-plies", "15") + " plies");
+            } else {
+                System.out.println("No forced mate found within " + options.get("mate") + " tree nodes");
+            }
+            System.out.println("Mate solver used " + solver.getNodesUsed() + " tree nodes, "
+                + (bm.numStates - startNodes) + " move generations");
+            System.out.println();
+        }
+
+        // Monte Carlo tree search instead of negamax for the given time
+        if (nextState == null && options.containsKey("mcts")) {
+            int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+            MctsSearch mcts = new MctsSearch(MCTS_NODES, threads);
+            nextState = mcts.search(startState, color, Long.parseLong(options.get("mcts")));
+            bm.numStates += mcts.getMoveGenerations();
+            System.out.println("MCTS ran " + mcts.getPlayouts() + " playouts on " + threads
+                + " threads, " + mcts.getNodesUsed() + " tree nodes");
+            System.out.println();
+        }
+
+        // Root moves split over SearchWorker processes
+        if (nextState == null && options.containsKey("workers")) {
+            // Workers can't take these; --quiescence and --no-repetition go with each request
+            for (String option : new String[] { "hash", "hash-load", "hash-save", "nnue", "tablebase" }) {
+                if (options.containsKey(option)) {
+                    throw new IllegalArgumentException("--" + option + " is not supported with --workers"
+                        + " (start the workers with --hash <MB> for a table)");
+                }
+            }
+            DistributedSearch search = new DistributedSearch(options.get("workers"));
+            search.quiescence = bm.quiescence;
+            search.repetitionDetection = bm.repetitionDetection;
+            try {
+                nextState = search.search(startState, color, maxDepth, strategy);
+                searchedValue = search.getValue();
+            } finally {
+                search.close();
+            }
+            bm.numStates += search.getWorkerNodes();
+            System.out.println("Distributed search value " + search.getValue() + ", root moves per worker: "
+                + search.jobCounts());
+            System.out.println();
+        }
+
+        if (nextState == null && options.containsKey("multipv")) {
+            // Top N moves, each with its score and principal variation
+            bm.stats.start();
+            ArrayList<PVLine> lines = bm.multiPV(startState, maxDepth, negaColor, strategy,
+                Integer.parseInt(options.get("multipv")));
+            bm.stats.stop();
+            for (int i = 0; i < lines.size(); i++) {
+                PVLine line = lines.get(i);
+                StringBuilder moves = new StringBuilder();
+                State prev = startState;
+                for (State s : line.getPV()) {
+                    moves.append(' ').append(EngineEvents.formatMove(bm.computeMove(prev, s)));
+                    prev = s;
+                }
+                System.out.println("PV " + (i + 1) + " (value " + line.getValue() + "):" + moves);
+            }
+            System.out.println();
+            if (!lines.isEmpty()) {
+                nextState = lines.get(0).getState();
+                searchedValue = lines.get(0).getValue();
+            }
+        }
+        if (nextState == null) {
+            bm.stats.start();
+            NegamaxWrapper bestMove = bm.negamax(startState, maxDepth, alpha, beta, negaColor, strategy);
+            bm.stats.stop();
+            nextState = bestMove.getState();
+            searchedValue = bestMove.getValue();
+        }
         System.out.println("State after optimal move:\n===============");
         printBoard(nextState.getBoard());
         System.out.println("===============");
         System.out.println("Nodes visited:" + bm.numStates);
+        if (bm.nnue != null) {
+            System.out.println("NNUE accumulators: " + bm.nnue.getUpdates() + " incremental, "
+                + bm.nnue.getRefreshes() + " from scratch");
+        }
+
+        if (cache != null) {
+            if (searchedValue != null) {
+                cache.store(cacheKey, OpeningBook.encodeMove(bm.computeMove(startState, nextState)),
+                    searchedValue, maxDepth);
+            }
+            cache.close();
+        }
+
+        if (bm.tt != null) {
+            System.out.println("Hash full: " + bm.tt.hashfull() + " permille");
+            if (options.containsKey("hash-save")) {
+                bm.tt.save(options.get("hash-save"));
+            }
+        }
+
+        metrics.close();
+        if (options.containsKey("metrics")) {
+            metrics.writeFile(options.get("metrics"));
+        }
+
+        // Search statistics report
+        if (options.containsKey("stats")) {
+            try (FileWriter out = new FileWriter(options.get("stats"))) {
+                out.write(bm.stats.toJson());
+            }
+            System.out.println("Search statistics written to " + options.get("stats"));
+            if (options.containsKey("mcts") || options.containsKey("workers")) {
+                System.out.println("(MCTS and worker searches are not in the statistics)");
+            }
+        }
     }
 }
@@ -0,0 +1,191 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+
+// Root-split search over SearchWorker processes
+// The first root move is searched with a full window to get a bound; the
+// rest are handed out one at a time to whichever worker is free, each with
+// the best value known when it is sent as alpha. Later moves then mostly
+// fail low quickly, as they would in a local alpha-beta search.
+// Workers use their own hash size; NNUE and tablebases are not supported.
+public class DistributedSearch {
+
+    // One worker connection
+    private static class Worker {
+        final String address;
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        int jobs = 0;
+
+        Worker(String address) throws IOException {
+            this.address = address;
+            int colon = address.lastIndexOf(':');
+            socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(SearchWorker.TIMEOUT_MS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        // Searches a root child for the side to move there; returns its value
+        int search(int id, State child, String side, int depth, int flags, int alpha, int beta, String strategy,
+                long[] nodes) throws IOException {
+            out.writeByte(SearchWorker.SEARCH);
+            out.writeInt(id);
+            out.write(PositionCodec.pack(child.getBoard()));
+            out.writeByte(side.equals("white") ? 0 : 1);
+            out.writeInt(child.getScore());
+            out.writeByte(Math.min(child.getHalfmoveClock(), 127));
+            out.writeByte(depth);
+            out.writeByte(flags);
+            out.writeInt(alpha);
+            out.writeInt(beta);
+            out.writeUTF(strategy);
+            out.flush();
+            if (in.readInt() != id) {
+                throw new IOException(address + ": reply out of order");
+            }
+            int value = in.readInt();
+            nodes[0] = in.readLong();
+            jobs++;
+            return value;
+        }
+
+        void close() {
+            try {
+                out.writeByte(SearchWorker.QUIT);
+                out.flush();
+                socket.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    private final ArrayList<Worker> workers = new ArrayList<>();
+    private final BoardStateManager bm = new BoardStateManager();
+
+    // Sent with every request
+    public boolean quiescence = false;
+    public boolean repetitionDetection = true;
+
+    // Best so far, shared by the worker threads
+    private int alpha;
+    private State best;
+    private int nextMove;
+    private long workerNodes;
+    private IOException failure;
+
+    // workerList: "host:port,host:port,..."
+    public DistributedSearch(String workerList) throws IOException {
+        try {
+            for (String address : workerList.split(",")) {
+                workers.add(new Worker(address.trim()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Let the workers already connected go
+            close();
+            throw e;
+        }
+    }
+
+    public long getWorkerNodes() { return workerNodes; }
+    public int getValue() { return alpha; }
+
+    public String jobCounts() {
+        StringBuilder sb = new StringBuilder();
+        for (Worker w : workers) {
+            sb.append(w.address).append('=').append(w.jobs).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    // Best root move at the given depth (null if there are no moves)
+    public State search(State root, String side, int depth, String strategy) throws IOException {
+        // Workers search the root's children one ply shallower; the depth travels in a byte
+        if (depth < 1 || depth > 127) {
+            throw new IllegalArgumentException("Distributed search depth must be 1 to 127, not " + depth);
+        }
+        ArrayList<State> successors = bm.computeAllStates(root, side, new ArrayList<>());
+        if (successors.isEmpty()) return null;
+        bm.orderSuccessors(root, successors, strategy);
+        String childSide = side.equals("white") ? "black" : "white";
+        int flags = (quiescence ? SearchWorker.QUIESCENCE : 0)
+            | (repetitionDetection ? 0 : SearchWorker.NO_REPETITION);
+        workerNodes = 0;
+
+        // First move alone, full window
+        long[] nodes = new long[1];
+        best = successors.get(0);
+        alpha = -workers.get(0).search(0, best, childSide, depth - 1, flags,
+            -Integer.MAX_VALUE, Integer.MAX_VALUE, strategy, nodes);
+        workerNodes += nodes[0];
+        nextMove = 1;
+        failure = null;
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (Worker worker : workers) {
+            Thread thread = new Thread(() -> runWorker(worker, successors, childSide, depth, flags, strategy));
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) throw failure;
+        return best;
+    }
+
+    private void runWorker(Worker worker, ArrayList<State> successors, String childSide, int depth, int flags,
+            String strategy) {
+        long[] nodes = new long[1];
+        while (true) {
+            int index;
+            int bound;
+            synchronized (this) {
+                if (nextMove >= successors.size() || failure != null) return;
+                index = nextMove++;
+                bound = alpha;
+            }
+            State child = successors.get(index);
+            int value;
+            try {
+                value = -worker.search(index, child, childSide, depth - 1, flags, -Integer.MAX_VALUE, -bound,
+                    strategy, nodes);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = new IOException(worker.address + ": " + e.getMessage(), e);
+                }
+                return;
+            }
+            synchronized (this) {
+                workerNodes += nodes[0];
+                // A value at or below the bound it was sent with is only an upper bound
+                if (value > alpha) {
+                    alpha = value;
+                    best = child;
+                }
+            }
+        }
+    }
+
+    public void close() {
+        for (Worker worker : workers) {
+            worker.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+// Strength vs. time: MCTS against negamax on the same positions
+// Each engine gets the same time per move; its move is then scored by a
+// deeper negamax search and compared to the best score available.
+// Negamax only starts a depth it expects to finish in time; used_ms shows
+// the time each engine actually took
+// Usage: java EngineComparison <color> <ref_depth> <threads> <time_ms> [<time_ms> ...] -- <input> [<input> ...]
+public class EngineComparison {
+
+    public static void main(String[] args) throws IOException {
+        int split = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--")) split = i;
+        }
+        if (args.length < 6 || split < 4 || split == args.length - 1) {
+            System.out.println("Usage: java EngineComparison <color> <ref_depth> <threads> <time_ms> [<time_ms> ...] -- <input> [<input> ...]");
+            System.exit(0);
+        }
+        String color = args[0];
+        int refDepth = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        int negaColor = color.equals("black") ? -1 : 1;
+
+        System.out.println("position  time_ms used_ms  engine   depth/playouts  move             ref_value  best_value");
+        for (int f = split + 1; f < args.length; f++) {
+            State start = loadState(args[f], color);
+            BoardStateManager bm = new BoardStateManager();
+
+            // Reference value of every root move
+            ArrayList<State> moves = bm.computeAllStates(start, color, new ArrayList<>());
+            int[] refValues = new int[moves.size()];
+            int bestRef = Integer.MIN_VALUE;
+            for (int i = 0; i < moves.size(); i++) {
+                refValues[i] = -bm.negamax(moves.get(i), refDepth - 1, -Integer.MAX_VALUE, Integer.MAX_VALUE,
+                    -negaColor, "sorted").getValue();
+                bestRef = Math.max(bestRef, refValues[i]);
+            }
+
+            for (int t = 3; t < split; t++) {
+                long budget = Long.parseLong(args[t]);
+
+                // Negamax: deepen while the next depth is expected to finish in the
+                // budget, assuming it grows at least as fast as any depth so far
+                State negamaxMove = null;
+                int depth = 0;
+                long startTime = System.currentTimeMillis();
+                long startNanos = System.nanoTime();
+                long budgetNanos = budget * 1000000L;
+                long last = 0;
+                double growth = 4.0;
+                while (depth < 64) {
+                    long elapsed = System.nanoTime() - startNanos;
+                    if (depth > 0 && elapsed + last * growth > budgetNanos) break;
+                    long iterationStart = System.nanoTime();
+                    depth++;
+                    negamaxMove = bm.negamax(start, depth, -Integer.MAX_VALUE, Integer.MAX_VALUE,
+                        negaColor, "sorted").getState();
+                    long took = System.nanoTime() - iterationStart;
+                    if (last > 0) growth = Math.max(growth, (double) took / last);
+                    last = took;
+                }
+                report(args[f], budget, System.currentTimeMillis() - startTime, "negamax", String.valueOf(depth),
+                    bm, start, negamaxMove, moves, refValues, bestRef);
+
+                MctsSearch mcts = new MctsSearch(ChessAI.MCTS_NODES, threads);
+                startTime = System.currentTimeMillis();
+                State mctsMove = mcts.search(start, color, budget);
+                report(args[f], budget, System.currentTimeMillis() - startTime, "mcts", String.valueOf(mcts.getPlayouts()), bm, start, mctsMove,
+                    moves, refValues, bestRef);
+            }
+        }
+    }
+
+    private static State loadState(String filename, String color) throws IOException {
+        char[][] board = ChessAI.GetBoard(filename);
+        State state = new State(board, 0, color, ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+        state.computeScore();
+        return state;
+    }
+
+    private static void report(String position, long budget, long used, String engine, String effort, BoardStateManager bm,
+            State start, State chosen, ArrayList<State> moves, int[] refValues, int bestRef) {
+        // MCTS returns null if no playout finished in time (or there is no move)
+        if (chosen == null) {
+            System.out.println(String.format("%-9s %7d %7d  %-8s %14s  %-16s %9s  %10d",
+                position, budget, used, engine, effort, "no move", "-", bestRef));
+            return;
+        }
+        int[] move = bm.computeMove(start, chosen);
+        int ref = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            if (java.util.Arrays.equals(bm.computeMove(start, moves.get(i)), move)) ref = refValues[i];
+        }
+        System.out.println(String.format("%-9s %7d %7d  %-8s %14s  %-16s %9d  %10d",
+            position, budget, used, engine, effort, EngineEvents.formatMove(move), ref, bestRef));
+    }
+}
@@ -0,0 +1,96 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+// Java Flight Recorder events emitted by the engine
+// Record with: java -XX:StartFlightRecording=filename=search.jfr ChessAI ...
+// Events cost a single check when no recording is running
+public class EngineEvents {
+
+    @Name("chess.SearchIteration")
+    @Label("Search Iteration")
+    @Category({"Chess", "Search"})
+    @StackTrace(false)
+    public static class SearchIteration extends Event {
+        @Label("Depth")
+        public int depth;
+
+        @Label("Strategy")
+        public String strategy;
+
+        @Label("Value")
+        public int value;
+
+        @Label("Nodes")
+        public long nodes;
+    }
+
+    @Name("chess.RootMove")
+    @Label("Root Move")
+    @Category({"Chess", "Search"})
+    @StackTrace(false)
+    public static class RootMove extends Event {
+        @Label("Move")
+        public String move;
+
+        @Label("Depth")
+        public int depth;
+
+        @Label("Value")
+        public int value;
+
+        @Label("Nodes")
+        public long nodes;
+    }
+
+    @Name("chess.TableResize")
+    @Label("Transposition Table Resize")
+    @Category({"Chess", "Memory"})
+    @StackTrace(false)
+    public static class TableResize extends Event {
+        @Label("Old Size")
+        @DataAmount
+        public long oldBytes;
+
+        @Label("New Size")
+        @DataAmount
+        public long newBytes;
+    }
+
+    @Name("chess.EngineMetrics")
+    @Label("Engine Metrics")
+    @Category({"Chess", "Metrics"})
+    @Description("Periodic counters sampled from the searching BoardStateManager")
+    @Period("1 s")
+    @StackTrace(false)
+    public static class Metrics extends Event {
+        @Label("Nodes")
+        public long nodes;
+
+        @Label("Nodes Per Second")
+        public double nodesPerSecond;
+
+        @Label("Allocation Per Node")
+        @DataAmount
+        public long bytesPerNode;
+
+        @Label("Tablebase Hit Ratio")
+        public double tablebaseHitRatio;
+
+        @Label("Transposition Table Hit Ratio")
+        public double ttHitRatio;
+
+        @Label("Transposition Table Fill (permille)")
+        public int hashfull;
+    }
+
+    // Formats a {fromRow, fromCol, toRow, toCol} move for event fields
+    public static String formatMove(int[] move) {
+        return "(" + move[0] + "," + move[1] + ")->(" + move[2] + "," + move[3] + ")";
+    }
+}
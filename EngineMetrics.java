@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.FlightRecorder;
+
+// Samples engine health counters from a BoardStateManager
+// Exposed as a periodic JFR event and optionally dumped to a file in
+// Prometheus text format for dashboards to scrape
+public class EngineMetrics {
+
+    private final BoardStateManager bm;
+    private final long threadId;
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long startAllocated;
+    private final Runnable jfrHook = this::emitJfr;
+    private ScheduledExecutorService exporter = null;
+
+    // Last sample
+    private long lastNodes = 0;
+    private long lastNanos;
+    private long nodes = 0;
+    private double nodesPerSecond = 0;
+    private long bytesPerNode = 0;
+    private double tablebaseHitRatio = 0;
+    private double ttHitRatio = 0;
+    private int hashfull = 0;
+
+    // Must be created on the thread that runs the search
+    public EngineMetrics(BoardStateManager bm) {
+        this.bm = bm;
+        this.threadId = Thread.currentThread().getId();
+        this.startAllocated = threads.getThreadAllocatedBytes(threadId);
+        this.lastNanos = System.nanoTime();
+        FlightRecorder.addPeriodicEvent(EngineEvents.Metrics.class, jfrHook);
+    }
+
+    // Reads the manager's counters; racy reads are fine for monitoring
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        nodes = bm.numStates;
+        if (now > lastNanos) {
+            nodesPerSecond = (nodes - lastNodes) * 1e9 / (now - lastNanos);
+        }
+        lastNodes = nodes;
+        lastNanos = now;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - startAllocated;
+        bytesPerNode = nodes == 0 ? 0 : allocated / nodes;
+        tablebaseHitRatio = bm.tbProbes == 0 ? 0 : (double) bm.tbHits / bm.tbProbes;
+        ttHitRatio = bm.ttProbes == 0 ? 0 : (double) bm.ttHits / bm.ttProbes;
+        hashfull = bm.tt == null ? 0 : bm.tt.hashfull();
+    }
+
+    private void emitJfr() {
+        sample();
+        EngineEvents.Metrics event = new EngineEvents.Metrics();
+        synchronized (this) {
+            event.nodes = nodes;
+            event.nodesPerSecond = nodesPerSecond;
+            event.bytesPerNode = bytesPerNode;
+            event.tablebaseHitRatio = tablebaseHitRatio;
+            event.ttHitRatio = ttHitRatio;
+            event.hashfull = hashfull;
+        }
+        event.commit();
+    }
+
+    public synchronized String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP chess_nodes_total Move generation calls since start\n");
+        out.append("# TYPE chess_nodes_total counter\n");
+        out.append("chess_nodes_total ").append(nodes).append('\n');
+        out.append("# HELP chess_nodes_per_second Search speed over the last sample\n");
+        out.append("# TYPE chess_nodes_per_second gauge\n");
+        out.append("chess_nodes_per_second ").append(nodesPerSecond).append('\n');
+        out.append("# HELP chess_allocated_bytes_per_node Heap allocated by the search thread per node\n");
+        out.append("# TYPE chess_allocated_bytes_per_node gauge\n");
+        out.append("chess_allocated_bytes_per_node ").append(bytesPerNode).append('\n');
+        out.append("# HELP chess_tablebase_hit_ratio Fraction of tablebase probes answered\n");
+        out.append("# TYPE chess_tablebase_hit_ratio gauge\n");
+        out.append("chess_tablebase_hit_ratio ").append(tablebaseHitRatio).append('\n');
+        out.append("# HELP chess_tt_hit_ratio Fraction of transposition table probes that found the position\n");
+        out.append("# TYPE chess_tt_hit_ratio gauge\n");
+        out.append("chess_tt_hit_ratio ").append(ttHitRatio).append('\n');
+        out.append("# HELP chess_tt_hashfull Permille of the transposition table used by the current search\n");
+        out.append("# TYPE chess_tt_hashfull gauge\n");
+        out.append("chess_tt_hashfull ").append(hashfull).append('\n');
+        return out.toString();
+    }
+
+    // Rewrites the file with fresh metrics every periodMs
+    public void startFileExport(String fileName, long periodMs) {
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.scheduleAtFixedRate(() -> writeFile(fileName), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes a temp file next to it and renames it over, so a scraper never
+    // reads a half-written file
+    public void writeFile(String fileName) {
+        sample();
+        Path target = Paths.get(fileName);
+        Path temp = Paths.get(fileName + ".tmp");
+        try {
+            Files.write(temp, toPrometheus().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Could not write metrics to " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    // Stops exporting and waits for a write in progress; call once the search is done
+    public void close() {
+        if (exporter != null) {
+            exporter.shutdown();
+            try {
+                if (!exporter.awaitTermination(5, TimeUnit.SECONDS)) {
+                    exporter.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                exporter.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        FlightRecorder.removePeriodicEvent(jfrHook);
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+// Evaluations per second: the search's material leaf (the score each state
+// carries), a full board scan as quiescence uses, and NNUE (full refresh and
+// incremental)
+// Positions come from random games started at each input
+// Also checks that a real search builds its accumulators incrementally
+// Usage: java [--add-modules jdk.incubator.vector] EvalBenchmark <network.nnue> <input> [<input> ...]
+public class EvalBenchmark {
+
+    private static final int PLIES_PER_INPUT = 2000;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java EvalBenchmark <network.nnue> <input> [<input> ...]");
+            System.exit(0);
+        }
+        Nnue nnue = new Nnue(args[0]);
+        BoardStateManager bm = new BoardStateManager();
+        Random random = new Random(1);
+
+        // Sample (parent, child) pairs along random games
+        ArrayList<State> parents = new ArrayList<>();
+        ArrayList<State> children = new ArrayList<>();
+        ArrayList<String> sides = new ArrayList<>();
+        for (int f = 1; f < args.length; f++) {
+            char[][] board = ChessAI.GetBoard(args[f]);
+            State start = new State(board, 0, "white", ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+            State current = start;
+            String side = "white";
+            for (int ply = 0; ply < PLIES_PER_INPUT; ply++) {
+                ArrayList<State> moves = bm.computeAllStates(current, side, new ArrayList<>());
+                if (moves.isEmpty()) {
+                    current = start;
+                    side = "white";
+                    continue;
+                }
+                State next = moves.get(random.nextInt(moves.size()));
+                parents.add(current);
+                children.add(next);
+                side = side.equals("white") ? "black" : "white";
+                sides.add(side);
+                current = next;
+            }
+        }
+        short[][] parentAcc = new short[parents.size()][];
+        int[][] moves = new int[parents.size()][];
+        for (int i = 0; i < parents.size(); i++) {
+            parentAcc[i] = nnue.refresh(parents.get(i).getBoard());
+            moves[i] = bm.computeMove(parents.get(i), children.get(i));
+        }
+        int n = parents.size();
+        System.out.println(n + " positions, NNUE " + nnue.getHiddenSize() + " hidden neurons, "
+            + nnue.getKernelName());
+
+        long sink = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            // First pass warms up the JIT
+            boolean report = pass == 1;
+
+            // What a plain search leaf costs: the score is kept up to date by move generation
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int i = 0; i < n; i++) {
+                    sink += children.get(i).getScore();
+                }
+            }
+            if (report) print("material (leaf)", n, start);
+
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int i = 0; i < n; i++) {
+                    sink += bm.materialBalance(children.get(i).getBoard(), sides.get(i));
+                }
+            }
+            if (report) print("material scan", n, start);
+
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int i = 0; i < n; i++) {
+                    sink += nnue.evaluate(nnue.refresh(children.get(i).getBoard()), sides.get(i).equals("white"));
+                }
+            }
+            if (report) print("nnue refresh", n, start);
+
+            // What the search does: update from the parent, then evaluate
+            start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int i = 0; i < n; i++) {
+                    char[][] before = parents.get(i).getBoard();
+                    int[] m = moves[i];
+                    short[] acc = nnue.update(parentAcc[i], before[m[0]][m[1]], m[0], m[1],
+                        before[m[2]][m[3]], m[2], m[3]);
+                    sink += nnue.evaluate(acc, sides.get(i).equals("white"));
+                }
+            }
+            if (report) print("nnue incremental", n, start);
+        }
+        System.out.println("(checksum " + sink + ")");
+
+        // Depth 4 search from each input: only the root should start from scratch
+        BoardStateManager searcher = new BoardStateManager();
+        searcher.nnue = nnue;
+        for (int f = 1; f < args.length; f++) {
+            char[][] board = ChessAI.GetBoard(args[f]);
+            State root = new State(board, 0, "black", ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+            root.computeScore();
+            long refreshes = nnue.getRefreshes();
+            long updates = nnue.getUpdates();
+            searcher.negamax(root, 4, -Integer.MAX_VALUE, Integer.MAX_VALUE, -1, "sorted");
+            refreshes = nnue.getRefreshes() - refreshes;
+            updates = nnue.getUpdates() - updates;
+            System.out.println(args[f] + " search: " + updates + " incremental, " + refreshes + " from scratch");
+            if (refreshes > 1 || updates == 0) {
+                throw new IllegalStateException("search leaves are not using incremental updates");
+            }
+        }
+    }
+
+    private static void print(String name, int n, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(String.format("%-18s %12.0f evals/s", name, (double) n * ROUNDS / seconds));
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Self-play matches between two engine configurations
+// Games run in parallel, one per thread, each engine with its own
+// BoardStateManager. Openings are a few random plies from the start position
+// (or from the given input files), each played twice with colors swapped.
+// The match stops early once the SPRT decides between elo0 and elo1.
+//
+// A configuration is a comma separated list, e.g.
+//   strategy=sorted,hash=16,quiescence,nnue=net.nnue,depth=6 (depth: even)
+// Usage: java MatchRunner <configA> <configB> [options]
+//   --games <N>  --nodes <N> | --time <ms>  --threads <N>  --random-plies <N>
+//   --elo0 <elo>  --elo1 <elo>  --alpha <p>  --beta <p>  --openings <a.in[:black],b.in,...>
+public class MatchRunner {
+
+    // Games that get this long are drawn
+    private static final int MAX_PLIES = 300;
+
+    private static final String START_POSITION =
+        "rnbqkbnr" + "pppppppp" + "________" + "________"
+        + "________" + "________" + "PPPPPPPP" + "RNBQKBNR";
+
+    // One side of the match
+    static class EngineConfig {
+        final String spec;
+        String strategy = "sorted";
+        int hashMB = 0;
+        int depth = 64;
+        boolean quiescence = false;
+        Nnue nnue = null;
+
+        EngineConfig(String spec) throws IOException {
+            this.spec = spec;
+            for (String item : spec.split(",")) {
+                String[] kv = item.split("=", 2);
+                switch (kv[0]) {
+                    case "strategy": strategy = kv[1]; break;
+                    case "hash": hashMB = Integer.parseInt(kv[1]); break;
+                    case "depth": depth = Integer.parseInt(kv[1]); break;
+                    case "quiescence": quiescence = true; break;
+                    case "nnue": nnue = new Nnue(kv[1]); break;
+                    default: throw new IllegalArgumentException("Unknown engine option " + kv[0]);
+                }
+            }
+            if (depth < 2 || depth % 2 != 0) {
+                throw new IllegalArgumentException("depth must be even and at least 2 (see chooseMove): " + spec);
+            }
+        }
+
+        BoardStateManager newManager() {
+            BoardStateManager bm = new BoardStateManager();
+            bm.quiescence = quiescence;
+            bm.nnue = nnue;
+            if (hashMB > 0) {
+                bm.tt = new TranspositionTable(hashMB);
+            }
+            return bm;
+        }
+    }
+
+    private final EngineConfig[] engines;
+    private final long nodeLimit;
+    private final long timeLimit;
+    private final AtomicBoolean stop = new AtomicBoolean(false);
+
+    public MatchRunner(EngineConfig a, EngineConfig b, long nodeLimit, long timeLimit) {
+        this.engines = new EngineConfig[] { a, b };
+        this.nodeLimit = nodeLimit;
+        this.timeLimit = timeLimit;
+    }
+
+    // Picks a move by iterative deepening until the node or time budget is
+    // spent. Only even depths are searched: the material leaf is not relative
+    // to the side to move, so an odd depth steers away from captures (even a
+    // free queen). Depth 2 always finishes; a deeper one stops inside the
+    // search when the budget runs out, and its result is thrown away
+    private State chooseMove(BoardStateManager bm, EngineConfig config, State root, String side) {
+        // Each move starts with an empty table
+        if (bm.tt != null) {
+            bm.tt.clear();
+        }
+        int color = side.equals("white") ? 1 : -1;
+        long startNodes = bm.numStates;
+        long startTime = System.nanoTime();
+        bm.nodeLimit = Long.MAX_VALUE;
+        bm.deadline = Long.MAX_VALUE;
+        State best = null;
+        for (int depth = 2; depth <= config.depth; depth += 2) {
+            NegamaxWrapper result = bm.negamax(root, depth, -Integer.MAX_VALUE, Integer.MAX_VALUE, color,
+                config.strategy);
+            if (bm.isAborted()) break;
+            best = result.getState();
+            if (nodeLimit > 0 && bm.numStates - startNodes >= nodeLimit) break;
+            if (timeLimit > 0 && System.nanoTime() - startTime >= timeLimit * 1000000L) break;
+            if (nodeLimit > 0) bm.nodeLimit = startNodes + nodeLimit;
+            if (timeLimit > 0) bm.deadline = startTime + timeLimit * 1000000L;
+        }
+        return best;
+    }
+
+    // Plays one game; returns engine 0's score in half points (2 win, 1 draw,
+    // 0 loss), or -1 if the match was stopped
+    public int playGame(char[][] board, String side, boolean engine0White) {
+        BoardStateManager[] managers = { engines[0].newManager(), engines[1].newManager() };
+        HashMap<Long, Integer> seen = new HashMap<>();
+        int clock = 0;
+        for (int ply = 0; ply < MAX_PLIES; ply++) {
+            if (stop.get()) return -1;
+            int engine = (side.equals("white") == engine0White) ? 0 : 1;
+            BoardStateManager bm = managers[engine];
+
+            State root = new State(board, 0, side, ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+            root.computeScore();
+            root.setHalfmoveClock(clock);
+            ArrayList<int[]> checkList = new ArrayList<>();
+            if (bm.computeAllStates(root, side, checkList).isEmpty()) {
+                if (checkList.isEmpty()) return 1;
+                // The side to move is mated
+                return engine == 0 ? 0 : 2;
+            }
+            // Threefold repetition
+            if (seen.merge(root.getHash(side), 1, Integer::sum) >= 3) return 1;
+            if (clock >= 100 || onlyKings(board)) return 1;
+
+            State next = chooseMove(bm, engines[engine], root, side);
+            board = next.getBoard();
+            clock = next.getHalfmoveClock();
+            side = side.equals("white") ? "black" : "white";
+        }
+        return 1;
+    }
+
+    private static boolean onlyKings(char[][] board) {
+        for (char[] row : board) {
+            for (char piece : row) {
+                if (piece != '_' && Character.toLowerCase(piece) != 'k') return false;
+            }
+        }
+        return true;
+    }
+
+    // Start position plus a few random plies (no mates); same seed, same opening
+    static char[][] randomOpening(char[][] start, String startSide, int plies, long seed, String[] sideOut) {
+        BoardStateManager bm = new BoardStateManager();
+        Random random = new Random(seed);
+        for (int attempt = 0; ; attempt++) {
+            char[][] board = start;
+            String side = startSide;
+            boolean ok = true;
+            for (int ply = 0; ply < plies && ok; ply++) {
+                State state = new State(board, 0, side, ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+                ArrayList<State> moves = bm.computeAllStates(state, side, new ArrayList<>());
+                if (moves.isEmpty()) {
+                    ok = false;
+                } else {
+                    board = moves.get(random.nextInt(moves.size())).getBoard();
+                    side = side.equals("white") ? "black" : "white";
+                }
+            }
+            if (ok || attempt > 100) {
+                sideOut[0] = side;
+                return board;
+            }
+        }
+    }
+
+    // Log likelihood ratio of elo1 against elo0 (GSPRT, trinomial normal approximation)
+    static double llr(int wins, int draws, int losses, double elo0, double elo1) {
+        int n = wins + draws + losses;
+        if (n == 0) return 0.0;
+        double mean = (wins + 0.5 * draws) / n;
+        double var = (wins * Math.pow(1 - mean, 2) + draws * Math.pow(0.5 - mean, 2)
+            + losses * Math.pow(mean, 2)) / n;
+        // Identical results so far say nothing about the spread
+        if (var == 0) return 0.0;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return (s1 - s0) * (2 * mean - s0 - s1) / (2 * var / n);
+    }
+
+    static double expectedScore(double elo) {
+        return 1.0 / (1.0 + Math.pow(10, -elo / 400));
+    }
+
+    static double elo(double score) {
+        score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    // Elo difference and 95% interval
+    static String eloReport(int wins, int draws, int losses) {
+        int n = wins + draws + losses;
+        double mean = (wins + 0.5 * draws) / n;
+        double var = (wins * Math.pow(1 - mean, 2) + draws * Math.pow(0.5 - mean, 2)
+            + losses * Math.pow(mean, 2)) / n;
+        double margin = 1.96 * Math.sqrt(var / n);
+        return String.format("Elo %+.1f [%+.1f, %+.1f]", elo(mean), elo(mean - margin), elo(mean + margin));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java MatchRunner <configA> <configB> [options]");
+            System.out.println("Options: --games <N>  --nodes <N> | --time <ms>  --threads <N>  --random-plies <N>");
+            System.out.println("         --elo0 <elo>  --elo1 <elo>  --alpha <p>  --beta <p>  --openings <a.in[:black],b.in,...>");
+            System.exit(0);
+        }
+        HashMap<String, String> options = ChessAI.parseOptions(args, 2);
+        EngineConfig a = new EngineConfig(args[0]);
+        EngineConfig b = new EngineConfig(args[1]);
+        int games = Integer.parseInt(options.getOrDefault("games", "1000"));
+        long nodes = Long.parseLong(options.getOrDefault("nodes", "0"));
+        long time = Long.parseLong(options.getOrDefault("time", "0"));
+        if (nodes == 0 && time == 0) nodes = 2000;
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int randomPlies = Integer.parseInt(options.getOrDefault("random-plies", "4"));
+        double elo0 = Double.parseDouble(options.getOrDefault("elo0", "0"));
+        double elo1 = Double.parseDouble(options.getOrDefault("elo1", "10"));
+        double alpha = Double.parseDouble(options.getOrDefault("alpha", "0.05"));
+        double beta = Double.parseDouble(options.getOrDefault("beta", "0.05"));
+        double lower = Math.log(beta / (1 - alpha));
+        double upper = Math.log((1 - beta) / alpha);
+
+        // Start positions and the side to move in each (input files: white unless ":black")
+        ArrayList<char[][]> starts = new ArrayList<>();
+        ArrayList<String> startSides = new ArrayList<>();
+        if (options.containsKey("openings")) {
+            for (String opening : options.get("openings").split(",")) {
+                String[] parts = opening.split(":");
+                starts.add(ChessAI.GetBoard(parts[0]));
+                startSides.add(parts.length > 1 ? parts[1] : "white");
+            }
+        } else {
+            char[][] board = new char[ChessAI.BOARD_SIZE][ChessAI.BOARD_SIZE];
+            for (int i = 0; i < 64; i++) board[i / 8][i % 8] = START_POSITION.charAt(i);
+            starts.add(board);
+            startSides.add("white");
+        }
+
+        MatchRunner runner = new MatchRunner(a, b, nodes, time);
+        System.out.println("A: " + a.spec + "  vs  B: " + b.spec + "  (" + (nodes > 0 ? nodes + " nodes" : time + "ms")
+            + " per move, " + threads + " threads)");
+        System.out.println(String.format("SPRT elo0=%.1f elo1=%.1f alpha=%.2f beta=%.2f  bounds [%.2f, %.2f]",
+            elo0, elo1, alpha, beta, lower, upper));
+
+        // Games come in pairs: same opening, colors reversed
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutorCompletionService<Integer> done = new ExecutorCompletionService<>(pool);
+        for (int g = 0; g < games; g++) {
+            final int pair = g / 2;
+            final boolean aWhite = g % 2 == 0;
+            done.submit(() -> {
+                String[] side = new String[1];
+                int index = pair % starts.size();
+                char[][] start = randomOpening(starts.get(index), startSides.get(index), randomPlies, pair, side);
+                return runner.playGame(start, side[0], aWhite);
+            });
+        }
+        pool.shutdown();
+
+        int wins = 0, draws = 0, losses = 0;
+        String verdict = "inconclusive";
+        long startTime = System.currentTimeMillis();
+        for (int g = 0; g < games; g++) {
+            int result;
+            try {
+                result = done.take().get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            if (result < 0) continue;
+            if (result == 2) wins++;
+            else if (result == 1) draws++;
+            else losses++;
+
+            double llr = llr(wins, draws, losses, elo0, elo1);
+            int played = wins + draws + losses;
+            if (played % 10 == 0) {
+                System.out.println(String.format("%d games: +%d =%d -%d  %s  LLR %.2f  (%ds)", played, wins, draws,
+                    losses, eloReport(wins, draws, losses), llr, (System.currentTimeMillis() - startTime) / 1000));
+            }
+            if (llr >= upper) {
+                verdict = "H1 accepted: A is stronger by about elo1 or more";
+                break;
+            }
+            if (llr <= lower) {
+                verdict = "H0 accepted: A is not stronger by elo1";
+                break;
+            }
+        }
+        runner.stop.set(true);
+        pool.shutdownNow();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+
+        System.out.println();
+        System.out.println(String.format("Final: %d games  +%d =%d -%d  %s", wins + draws + losses, wins, draws, losses,
+            eloReport(wins, draws, losses)));
+        System.out.println(String.format("LLR %.2f  %s", llr(wins, draws, losses, elo0, elo1), verdict));
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Proof-number search for forced mates
+// The attacker's turns are OR nodes (one mating move is enough) and the
+// defender's turns are AND nodes (every reply must lead to mate). Each step
+// expands the most-proving leaf, so effort goes to the most forcing lines
+// rather than a fixed depth. Nodes live in flat arrays capped at maxNodes;
+// states are dropped once a node is expanded (only its move is kept).
+// The mate length is deepened 1, 3, 5... plies, so the first proof found is
+// the shortest mate and the search can't wander down endless forcing lines.
+// A position repeating one earlier on its own line counts as a draw;
+// otherwise endless checks with a single reply would keep a proof number
+// of 1 forever and soak up the whole search.
+public class MateSolver {
+
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    private final BoardStateManager bm;
+    private final int maxNodes;
+
+    // Node table
+    private final State[] states;
+    private final int[] proof;
+    private final int[] disproof;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] numChildren;
+    private final short[] move;
+    private final boolean[] orNode;
+    private final long[] hash;
+    private final short[] ply;
+    private int numNodes = 0;
+
+    // Longest mate looked for, in plies
+    private int maxPly = 15;
+    // Ply limit of the current iteration
+    private int plyLimit;
+    private int totalNodes = 0;
+    // Nodes the current iteration may still create
+    private int budget;
+    private ArrayList<State> bestLine = new ArrayList<>();
+
+    private String attacker;
+    private boolean proven = false;
+    private boolean disproven = false;
+
+    public MateSolver(BoardStateManager bm, int maxNodes) {
+        this.bm = bm;
+        this.maxNodes = maxNodes;
+        states = new State[maxNodes];
+        proof = new int[maxNodes];
+        disproof = new int[maxNodes];
+        parent = new int[maxNodes];
+        firstChild = new int[maxNodes];
+        numChildren = new int[maxNodes];
+        move = new short[maxNodes];
+        orNode = new boolean[maxNodes];
+        hash = new long[maxNodes];
+        ply = new short[maxNodes];
+    }
+
+    // Only look for mates within this many plies
+    public void setMaxPly(int maxPly) {
+        this.maxPly = maxPly;
+    }
+
+    // Tree nodes created over all iterations
+    public int getNodesUsed() { return totalNodes; }
+    public boolean isProven() { return proven; }
+    public boolean isDisproven() { return disproven; }
+
+    private String sideToMove(int node) {
+        return orNode[node] == attacker.equals("white") ? "white" : "black";
+    }
+
+    private int addNode(State state, int par, boolean isOr, int encodedMove) {
+        int node = numNodes++;
+        states[node] = state;
+        proof[node] = 1;
+        disproof[node] = 1;
+        parent[node] = par;
+        firstChild[node] = -1;
+        numChildren[node] = 0;
+        move[node] = (short) encodedMove;
+        orNode[node] = isOr;
+        ply[node] = (short) (par < 0 ? 0 : ply[par] + 1);
+        hash[node] = state.getHash(sideToMove(node));
+        return node;
+    }
+
+    // Searches for a forced mate by the side to move in state
+    // Returns true if one was proven within the ply limit and node budget;
+    // isDisproven() means there is no mate within the ply limit
+    public boolean solve(State state, String sideToMove) {
+        attacker = sideToMove;
+        totalNodes = 0;
+        proven = false;
+        disproven = false;
+        bestLine = new ArrayList<>();
+
+        // The node budget is shared by all iterations
+        for (plyLimit = 1; plyLimit <= maxPly && totalNodes < maxNodes; plyLimit += 2) {
+            clear();
+            addNode(state, -1, true, 0);
+            budget = maxNodes - totalNodes;
+            boolean outOfNodes = false;
+            while (proof[0] != 0 && disproof[0] != 0) {
+                int leaf = mostProving();
+                if (!expand(leaf)) {
+                    outOfNodes = true;
+                    break;
+                }
+                update(leaf);
+            }
+            totalNodes += numNodes;
+
+            if (proof[0] == 0) {
+                proven = true;
+                bestLine = extractLine();
+                return true;
+            }
+            if (outOfNodes) {
+                return false;
+            }
+        }
+        // Every iteration up to the limit refuted the mate
+        disproven = plyLimit > maxPly;
+        return false;
+    }
+
+    // Walks down from the root, always taking the child that decides the
+    // parent's proof (OR) or disproof (AND) number
+    private int mostProving() {
+        int node = 0;
+        while (firstChild[node] >= 0) {
+            int best = firstChild[node];
+            for (int c = firstChild[node]; c < firstChild[node] + numChildren[node]; c++) {
+                if (orNode[node] ? proof[c] < proof[best] : disproof[c] < disproof[best]) {
+                    best = c;
+                }
+            }
+            node = best;
+        }
+        return node;
+    }
+
+    // Generates the children of a leaf; false if they don't fit in the table
+    private boolean expand(int node) {
+        // A repetition can't prove a mate
+        if (isRepetition(node)) {
+            proof[node] = INF;
+            disproof[node] = 0;
+            return true;
+        }
+
+        String side = sideToMove(node);
+        ArrayList<int[]> checkList = new ArrayList<>();
+        ArrayList<State> successors = bm.computeAllStates(states[node], side, checkList);
+
+        if (successors.isEmpty()) {
+            // Mated defender proves the line; mated attacker or stalemate refutes it
+            boolean mateForAttacker = !checkList.isEmpty() && !orNode[node];
+            proof[node] = mateForAttacker ? 0 : INF;
+            disproof[node] = mateForAttacker ? INF : 0;
+            firstChild[node] = -1;
+            return true;
+        }
+        // No room left for a mate on this line
+        if (ply[node] >= plyLimit) {
+            proof[node] = INF;
+            disproof[node] = 0;
+            return true;
+        }
+        if (numNodes + successors.size() > budget) {
+            return false;
+        }
+
+        firstChild[node] = numNodes;
+        numChildren[node] = successors.size();
+        for (State successor : successors) {
+            addNode(successor, node, !orNode[node],
+                OpeningBook.encodeMove(bm.computeMove(states[node], successor)));
+        }
+        // The line is rebuilt from moves, so interior states can go
+        states[node] = node == 0 ? states[node] : null;
+        setNumbers(node);
+        return true;
+    }
+
+    // Same position, same side to move, earlier on this node's line
+    private boolean isRepetition(int node) {
+        int ancestor = parent[node];
+        while (ancestor >= 0 && parent[ancestor] >= 0) {
+            ancestor = parent[ancestor];
+            if (hash[ancestor] == hash[node]) {
+                return true;
+            }
+            ancestor = parent[ancestor];
+        }
+        return false;
+    }
+
+    private void setNumbers(int node) {
+        int min = INF;
+        long sum = 0;
+        for (int c = firstChild[node]; c < firstChild[node] + numChildren[node]; c++) {
+            int toMin = orNode[node] ? proof[c] : disproof[c];
+            int toSum = orNode[node] ? disproof[c] : proof[c];
+            min = Math.min(min, toMin);
+            sum += toSum;
+        }
+        int summed = (int) Math.min(sum, INF);
+        proof[node] = orNode[node] ? min : summed;
+        disproof[node] = orNode[node] ? summed : min;
+    }
+
+    // Propagates new numbers toward the root until nothing changes
+    private void update(int node) {
+        node = parent[node];
+        while (node >= 0) {
+            int oldProof = proof[node];
+            int oldDisproof = disproof[node];
+            setNumbers(node);
+            if (proof[node] == oldProof && disproof[node] == oldDisproof) {
+                break;
+            }
+            node = parent[node];
+        }
+    }
+
+    // Plies until mate in a proven subtree, with best play by both sides
+    // (attacker mates fastest, defender holds out longest)
+    private int mateLength(int node) {
+        if (firstChild[node] < 0) {
+            return 0;
+        }
+        int length = orNode[node] ? INF : 0;
+        for (int c = firstChild[node]; c < firstChild[node] + numChildren[node]; c++) {
+            if (proof[c] != 0) continue;
+            int childLength = 1 + mateLength(c);
+            length = orNode[node] ? Math.min(length, childLength) : Math.max(length, childLength);
+        }
+        return length;
+    }
+
+    // Mating line from the root as a list of states; empty if no mate was proven
+    public ArrayList<State> mateLine() {
+        return bestLine;
+    }
+
+    // Reads the mating line out of a proven tree
+    private ArrayList<State> extractLine() {
+        ArrayList<State> line = new ArrayList<>();
+        int node = 0;
+        State current = states[0];
+        while (firstChild[node] >= 0) {
+            int best = -1;
+            int bestLength = 0;
+            for (int c = firstChild[node]; c < firstChild[node] + numChildren[node]; c++) {
+                if (proof[c] != 0) continue;
+                int length = mateLength(c);
+                if (best < 0 || (orNode[node] ? length < bestLength : length > bestLength)) {
+                    best = c;
+                    bestLength = length;
+                }
+            }
+            current = bm.findSuccessor(current, sideToMove(node), OpeningBook.decodeMove(move[best]));
+            line.add(current);
+            node = best;
+        }
+        return line;
+    }
+
+    // Frees the node table for reuse
+    private void clear() {
+        Arrays.fill(states, 0, numNodes, null);
+        numNodes = 0;
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Monte Carlo Tree Search with UCT selection
+// The tree is kept in flat arrays (one slot per node, children stored
+// contiguously) rather than one object per node. Nodes hold only the move
+// that leads to them; boards are rebuilt by replaying moves from the root
+// on the way down, so only the root keeps a State. Several threads run
+// playouts at once; each has its own BoardStateManager. While a thread is
+// playing out below a node, that node carries a virtual loss so the other
+// threads spread out over different lines.
+public class MctsSearch {
+
+    // UCT exploration constant
+    private static final double EXPLORATION = 1.4;
+    // Each pending playout counts as this many lost visits
+    private static final int VIRTUAL_LOSS = 1;
+    // Playouts stop after this many plies and are scored on material
+    private static final int PLAYOUT_PLIES = 40;
+
+    private final int maxNodes;
+    private final int numThreads;
+
+    // Node table; values are from the point of view of the side that moved into the node
+    private final short[] move;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] numChildren;
+    private final int[] visits;
+    private final double[] wins;
+    private final int[] virtualLoss;
+    private final boolean[] whiteMoved;
+    private int numNodes = 0;
+    private State root;
+
+    private long playouts = 0;
+    private long moveGenerations = 0;
+
+    public MctsSearch(int maxNodes, int numThreads) {
+        this.maxNodes = maxNodes;
+        this.numThreads = numThreads;
+        move = new short[maxNodes];
+        parent = new int[maxNodes];
+        firstChild = new int[maxNodes];
+        numChildren = new int[maxNodes];
+        visits = new int[maxNodes];
+        wins = new double[maxNodes];
+        virtualLoss = new int[maxNodes];
+        whiteMoved = new boolean[maxNodes];
+    }
+
+    public long getPlayouts() { return playouts; }
+    public long getMoveGenerations() { return moveGenerations; }
+    public int getNodesUsed() { return numNodes; }
+
+    // move is in OpeningBook encoding (0 for the root)
+    private int addNode(int nodeMove, int par, boolean white) {
+        int node = numNodes++;
+        move[node] = (short) nodeMove;
+        parent[node] = par;
+        firstChild[node] = -1;
+        numChildren[node] = 0;
+        visits[node] = 0;
+        wins[node] = 0;
+        virtualLoss[node] = 0;
+        whiteMoved[node] = white;
+        return node;
+    }
+
+    // Runs playouts for timeMs and returns the most visited root move
+    public State search(State root, String sideToMove, long timeMs) {
+        numNodes = 0;
+        playouts = 0;
+        moveGenerations = 0;
+        this.root = root;
+        // The root "was moved into" by the side not to move
+        addNode(0, -1, !sideToMove.equals("white"));
+
+        long deadline = System.currentTimeMillis() + timeMs;
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            final long seed = t;
+            pool.execute(() -> runWorker(deadline, seed));
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(timeMs + 60000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int best = -1;
+        for (int c = firstChild[0]; c >= 0 && c < firstChild[0] + numChildren[0]; c++) {
+            if (best < 0 || visits[c] > visits[best]) best = c;
+        }
+        if (best < 0) return null;
+        return new BoardStateManager().findSuccessor(root, sideToMove, OpeningBook.decodeMove(move[best]));
+    }
+
+    // Board of a node: the moves on its path applied to the root, without
+    // generating any other moves
+    private State replay(BoardStateManager bm, int[] path, int length) {
+        State state = root;
+        for (int i = length - 1; i >= 0; i--) {
+            int[] m = OpeningBook.decodeMove(path[i]);
+            state = bm.newStateGenerator(state, new int[]{m[0], m[1]}, new int[]{m[2], m[3]},
+                state.getBoard()[m[0]][m[1]]);
+        }
+        return state;
+    }
+
+    private void runWorker(long deadline, long seed) {
+        BoardStateManager bm = new BoardStateManager();
+        Random random = new Random(seed);
+        while (System.currentTimeMillis() < deadline) {
+            if (!iterate(bm, random)) break;
+        }
+        synchronized (this) {
+            moveGenerations += bm.numStates;
+        }
+    }
+
+    // One selection / expansion / playout / backup cycle
+    // Returns false once the tree is full
+    private boolean iterate(BoardStateManager bm, Random random) {
+        int leaf;
+        int[] path = new int[64];
+        int length = 0;
+        synchronized (this) {
+            leaf = select();
+            // Virtual loss along the path, collecting its moves (leaf first)
+            for (int n = leaf; n >= 0; n = parent[n]) {
+                virtualLoss[n] += VIRTUAL_LOSS;
+                if (n > 0) {
+                    if (length == path.length) path = Arrays.copyOf(path, length * 2);
+                    path[length++] = move[n] & 0xFFFF;
+                }
+            }
+        }
+        State leafState = replay(bm, path, length);
+
+        // Move generation happens outside the lock; select() only returns
+        // nodes without children, so the leaf still needs expanding
+        String side = whiteMoved[leaf] ? "black" : "white";
+        ArrayList<int[]> checkList = new ArrayList<>();
+        ArrayList<State> successors = bm.computeAllStates(leafState, side, checkList);
+
+        int playoutNode = leaf;
+        State playoutState = leafState;
+        if (!successors.isEmpty()) {
+            synchronized (this) {
+                // Another thread may have expanded it in the meantime
+                if (firstChild[leaf] == -1) {
+                    if (numNodes + successors.size() > maxNodes) {
+                        removeVirtualLoss(leaf);
+                        return false;
+                    }
+                    firstChild[leaf] = numNodes;
+                    numChildren[leaf] = successors.size();
+                    for (State s : successors) {
+                        addNode(OpeningBook.encodeMove(bm.computeMove(leafState, s)), leaf, side.equals("white"));
+                    }
+                }
+                // Play out from a random child; successors are in the same order as the children
+                int child = random.nextInt(numChildren[leaf]);
+                playoutNode = firstChild[leaf] + child;
+                virtualLoss[playoutNode] += VIRTUAL_LOSS;
+                playoutState = successors.get(child);
+            }
+        }
+
+        double result;
+        if (successors.isEmpty()) {
+            // Terminal: the side to move is mated (the mover won) or stalemated
+            result = checkList.isEmpty() ? 0.5 : 1.0;
+        } else {
+            result = playout(bm, random, playoutState, side.equals("black"));
+        }
+
+        synchronized (this) {
+            // result is for the side that moved into playoutNode; flip going up
+            double value = result;
+            for (int n = playoutNode; n >= 0; n = parent[n]) {
+                visits[n]++;
+                wins[n] += value;
+                virtualLoss[n] -= VIRTUAL_LOSS;
+                value = 1.0 - value;
+            }
+            playouts++;
+        }
+        return true;
+    }
+
+    private void removeVirtualLoss(int leaf) {
+        for (int n = leaf; n >= 0; n = parent[n]) {
+            virtualLoss[n] -= VIRTUAL_LOSS;
+        }
+    }
+
+    // Descends by UCT until reaching a node without children
+    // Caller holds the lock
+    private int select() {
+        int node = 0;
+        while (firstChild[node] >= 0) {
+            int parentVisits = visits[node] + virtualLoss[node];
+            double logN = Math.log(Math.max(1, parentVisits));
+            int best = firstChild[node];
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int c = firstChild[node]; c < firstChild[node] + numChildren[node]; c++) {
+                int n = visits[c] + virtualLoss[c];
+                double score;
+                if (n == 0) {
+                    score = Double.POSITIVE_INFINITY;
+                } else {
+                    // Virtual losses add visits without wins
+                    score = wins[c] / n + EXPLORATION * Math.sqrt(logN / n);
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+            node = best;
+        }
+        return node;
+    }
+
+    // Random playout from a state; returns the result for the side that
+    // moved into it (1 win, 0.5 draw, 0 loss)
+    private double playout(BoardStateManager bm, Random random, State state, boolean whiteToMove) {
+        State current = state;
+        boolean white = whiteToMove;
+        for (int ply = 0; ply < PLAYOUT_PLIES; ply++) {
+            ArrayList<int[]> checkList = new ArrayList<>();
+            ArrayList<State> moves = bm.computeAllStates(current, white ? "white" : "black", checkList);
+            if (moves.isEmpty()) {
+                if (checkList.isEmpty()) return 0.5;
+                // The side to move is mated
+                return (white == whiteToMove) ? 1.0 : 0.0;
+            }
+            current = moves.get(random.nextInt(moves.size()));
+            white = !white;
+        }
+        // Out of plies: squash the material balance into a win probability
+        int balance = bm.materialBalance(current.getBoard(), whiteToMove ? "black" : "white");
+        return 1.0 / (1.0 + Math.exp(-BoardStateManager.pawns(balance) / 4.0));
+    }
+
+    public void clear() {
+        root = null;
+        numNodes = 0;
+    }
+}
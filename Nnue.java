@@ -0,0 +1,240 @@
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+
+// Efficiently updatable neural network evaluation (NNUE)
+// Network: 768 inputs (6 piece types x 2 colors x 64 squares) -> HIDDEN
+// int16 neurons, once from each side's point of view, clipped to [0, QA]
+// -> one output. A move only changes two or three inputs, so a State's
+// accumulator (the hidden layer before clipping) is made from its parent's
+// the first time it is needed, instead of summing all pieces again. Only
+// a state without a parent (a search root) is built from scratch.
+//
+// Weights file (little endian):
+//   "NNUE", int32 hidden size,
+//   int16 feature weights [768][hidden], int16 feature biases [hidden],
+//   int16 output weights [2 * hidden] (side to move first), int16 output bias
+public class Nnue {
+
+    public static final int INPUTS = 768;
+    // Quantization: clipped neurons are in [0, QA], output weights are scaled by QB
+    public static final int QA = 255;
+    public static final int QB = 64;
+    // Output in centipawns
+    public static final int SCALE = 400;
+
+    // Feature order of piece types
+    private static final String TYPES = "pnbrqk";
+
+    // Vector math for the accumulator and output layer
+    interface Kernel {
+        // acc[i] += weights[offset + i]
+        void add(short[] acc, int accOffset, short[] weights, int offset, int length);
+        // acc[i] -= weights[offset + i]
+        void sub(short[] acc, int accOffset, short[] weights, int offset, int length);
+        // sum of clamp(acc[i], 0, QA) * weights[offset + i]
+        int clippedDot(short[] acc, int accOffset, short[] weights, int offset, int length);
+    }
+
+    private final int hidden;
+    private final short[] featureWeights;
+    private final short[] featureBias;
+    private final short[] outputWeights;
+    private final short outputBias;
+    private final Kernel kernel;
+
+    // Work done, to check that searches take the incremental path
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    public Nnue(String filename) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename))).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < 8 || in.get() != 'N' || in.get() != 'N' || in.get() != 'U' || in.get() != 'E') {
+            throw new IOException(filename + " is not a network file");
+        }
+        hidden = in.getInt();
+        if (hidden <= 0 || in.remaining() != 2 * (INPUTS * hidden + hidden + 2 * hidden + 1)) {
+            throw new IOException(filename + ": wrong size for hidden layer of " + hidden);
+        }
+        featureWeights = new short[INPUTS * hidden];
+        featureBias = new short[hidden];
+        outputWeights = new short[2 * hidden];
+        in.asShortBuffer().get(featureWeights);
+        in.position(in.position() + 2 * featureWeights.length);
+        in.asShortBuffer().get(featureBias);
+        in.position(in.position() + 2 * featureBias.length);
+        in.asShortBuffer().get(outputWeights);
+        in.position(in.position() + 2 * outputWeights.length);
+        outputBias = in.getShort();
+        kernel = loadKernel();
+    }
+
+    // SIMD kernel when the incubator Vector API is available, otherwise scalar
+    // (NnueSimd is only loaded by name, so building without the module still works)
+    private static Kernel loadKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernel) Class.forName("NnueSimd").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall through to scalar
+            }
+        }
+        return new ScalarKernel();
+    }
+
+    public String getKernelName() {
+        return kernel.getClass().getSimpleName();
+    }
+
+    public int getHiddenSize() {
+        return hidden;
+    }
+
+    public long getRefreshes() { return refreshes.sum(); }
+    public long getUpdates() { return updates.sum(); }
+
+    // Input index of a piece seen from one side; black's view is mirrored
+    // top to bottom with colors swapped, so both halves share one weight set
+    private static int feature(char piece, int row, int col, boolean whiteView) {
+        boolean white = Character.isLowerCase(piece);
+        int type = TYPES.indexOf(Character.toLowerCase(piece));
+        int side = (white == whiteView) ? 0 : 1;
+        int square = (whiteView ? row : ChessAI.BOARD_SIZE - 1 - row) * ChessAI.BOARD_SIZE + col;
+        return (side * 6 + type) * 64 + square;
+    }
+
+    // Accumulator from scratch: white's view in [0, hidden), black's in [hidden, 2 * hidden)
+    public short[] refresh(char[][] board) {
+        refreshes.increment();
+        short[] acc = new short[2 * hidden];
+        System.arraycopy(featureBias, 0, acc, 0, hidden);
+        System.arraycopy(featureBias, 0, acc, hidden, hidden);
+        for (int i = 0; i < ChessAI.BOARD_SIZE; i++) {
+            for (int j = 0; j < ChessAI.BOARD_SIZE; j++) {
+                char piece = board[i][j];
+                if (piece == '_') continue;
+                kernel.add(acc, 0, featureWeights, feature(piece, i, j, true) * hidden, hidden);
+                kernel.add(acc, hidden, featureWeights, feature(piece, i, j, false) * hidden, hidden);
+            }
+        }
+        return acc;
+    }
+
+    // Child accumulator after piece moves from (fromRow, fromCol) to
+    // (toRow, toCol), taking captured ('_' if none)
+    public short[] update(short[] parent, char piece, int fromRow, int fromCol,
+            char captured, int toRow, int toCol) {
+        updates.increment();
+        short[] acc = parent.clone();
+        for (int view = 0; view < 2; view++) {
+            boolean whiteView = view == 0;
+            int offset = view * hidden;
+            kernel.sub(acc, offset, featureWeights, feature(piece, fromRow, fromCol, whiteView) * hidden, hidden);
+            kernel.add(acc, offset, featureWeights, feature(piece, toRow, toCol, whiteView) * hidden, hidden);
+            if (captured != '_') {
+                kernel.sub(acc, offset, featureWeights, feature(captured, toRow, toCol, whiteView) * hidden, hidden);
+            }
+        }
+        return acc;
+    }
+
+    // Evaluation in centipawns for the side to move
+    public int evaluate(State state, String sideToMove) {
+        return evaluate(accumulator(state), sideToMove.equals("white"));
+    }
+
+    // The state's accumulator, updated from its parent's (computing that
+    // first if needed) and kept on the state for its other children
+    public short[] accumulator(State state) {
+        short[] acc = state.getAccumulator();
+        if (acc != null) return acc;
+        State parent = state.getNnueParent();
+        if (parent == null) {
+            acc = refresh(state.getBoard());
+        } else {
+            int[] m = OpeningBook.decodeMove(state.getNnueMove());
+            char[][] before = parent.getBoard();
+            acc = update(accumulator(parent), before[m[0]][m[1]], m[0], m[1], before[m[2]][m[3]], m[2], m[3]);
+            state.setNnueParent(null, 0);
+        }
+        state.setAccumulator(acc);
+        return acc;
+    }
+
+    public int evaluate(short[] acc, boolean whiteToMove) {
+        int us = whiteToMove ? 0 : hidden;
+        int them = whiteToMove ? hidden : 0;
+        long out = outputBias
+            + (long) kernel.clippedDot(acc, us, outputWeights, 0, hidden)
+            + kernel.clippedDot(acc, them, outputWeights, hidden, hidden);
+        return (int) (out * SCALE / (QA * QB));
+    }
+
+    static class ScalarKernel implements Kernel {
+        public void add(short[] acc, int accOffset, short[] weights, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                acc[accOffset + i] += weights[offset + i];
+            }
+        }
+
+        public void sub(short[] acc, int accOffset, short[] weights, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                acc[accOffset + i] -= weights[offset + i];
+            }
+        }
+
+        public int clippedDot(short[] acc, int accOffset, short[] weights, int offset, int length) {
+            int sum = 0;
+            for (int i = 0; i < length; i++) {
+                int v = Math.min(Math.max(acc[accOffset + i], 0), QA);
+                sum += v * weights[offset + i];
+            }
+            return sum;
+        }
+    }
+
+    // Writes a network that reproduces the material evaluation: one neuron
+    // per (piece type, own/opponent) counting pieces, weighted by pieceVal
+    // Usage: java Nnue <output.nnue> [hidden]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java Nnue <output.nnue> [hidden]");
+            System.exit(0);
+        }
+        int hidden = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        // Each piece adds PER_PIECE to its neuron (up to 15 of a kind stays below QA)
+        final int PER_PIECE = 16;
+        short[] weights = new short[INPUTS * hidden];
+        short[] output = new short[2 * hidden];
+        for (int side = 0; side < 2; side++) {
+            for (int type = 0; type < 5; type++) {
+                int neuron = side * 5 + type;
+                for (int square = 0; square < 64; square++) {
+                    weights[((side * 6 + type) * 64 + square) * hidden + neuron] = PER_PIECE;
+                }
+                double pawns = BoardStateManager.pawns(BoardStateManager.pieceVal.get(TYPES.charAt(type)));
+                // PER_PIECE * w * SCALE / (QA * QB) = 100 * pawns (centipawns)
+                long w = Math.round(100 * pawns * QA * QB / (SCALE * PER_PIECE));
+                if (w > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Piece value " + pawns + " pawns does not fit the network");
+                }
+                output[neuron] = (short) (side == 0 ? w : -w);
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])))) {
+            out.writeBytes("NNUE");
+            out.writeInt(Integer.reverseBytes(hidden));
+            for (short w : weights) out.writeShort(Short.reverseBytes(w));
+            for (int i = 0; i < hidden; i++) out.writeShort(0);
+            for (short w : output) out.writeShort(Short.reverseBytes(w));
+            out.writeShort(0);
+        }
+        System.out.println("Wrote material network with " + hidden + " hidden neurons to " + args[0]);
+    }
+}
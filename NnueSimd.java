@@ -0,0 +1,61 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API kernel for Nnue
+// Needs the incubator module at compile and run time:
+//   javac --add-modules jdk.incubator.vector NnueSimd.java
+//   java --add-modules jdk.incubator.vector ChessAI ...
+public class NnueSimd implements Nnue.Kernel {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    // Same bit size, so a short vector widens into two int vectors
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    public void add(short[] acc, int accOffset, short[] weights, int offset, int length) {
+        int i = 0;
+        for (; i <= length - SHORTS.length(); i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, acc, accOffset + i)
+                .add(ShortVector.fromArray(SHORTS, weights, offset + i))
+                .intoArray(acc, accOffset + i);
+        }
+        for (; i < length; i++) {
+            acc[accOffset + i] += weights[offset + i];
+        }
+    }
+
+    public void sub(short[] acc, int accOffset, short[] weights, int offset, int length) {
+        int i = 0;
+        for (; i <= length - SHORTS.length(); i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, acc, accOffset + i)
+                .sub(ShortVector.fromArray(SHORTS, weights, offset + i))
+                .intoArray(acc, accOffset + i);
+        }
+        for (; i < length; i++) {
+            acc[accOffset + i] -= weights[offset + i];
+        }
+    }
+
+    public int clippedDot(short[] acc, int accOffset, short[] weights, int offset, int length) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (; i <= length - SHORTS.length(); i += SHORTS.length()) {
+            ShortVector v = ShortVector.fromArray(SHORTS, acc, accOffset + i)
+                .max((short) 0).min((short) Nnue.QA);
+            ShortVector w = ShortVector.fromArray(SHORTS, weights, offset + i);
+            // Products don't fit in 16 bits, so widen both halves first
+            for (int part = 0; part < 2; part++) {
+                IntVector vi = (IntVector) v.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector wi = (IntVector) w.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(vi.mul(wi));
+            }
+        }
+        int total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            int v = Math.min(Math.max(acc[accOffset + i], 0), Nnue.QA);
+            total += v * weights[offset + i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Random;
+
+// Read-only opening book in Polyglot .bin format
+// Each entry is 16 big-endian bytes: key (8), move (2), weight (2), learn (4)
+// Entries are sorted by key, so lookups are a binary search over the mapped file
+public class OpeningBook {
+
+    public static final int ENTRY_SIZE = 16;
+
+    private final MappedByteBuffer entries;
+    private final int numEntries;
+    private final Random random;
+
+    public OpeningBook(String fileName) throws IOException {
+        this(fileName, new Random());
+    }
+
+    public OpeningBook(String fileName, Random random) throws IOException {
+        // Mapping stays valid after the channel is closed
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+                FileChannel channel = file.getChannel()) {
+            this.entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.numEntries = entries.capacity() / ENTRY_SIZE;
+        this.random = random;
+    }
+
+    public int size() { return numEntries; }
+
+    // Packs a move the same way Polyglot does
+    // (to col, to row, from col, from row; 3 bits each)
+    public static int encodeMove(int[] move) {
+        return move[3] | (move[2] << 3) | (move[1] << 6) | (move[0] << 9);
+    }
+
+    // Inverse of encodeMove; returns {fromRow, fromCol, toRow, toCol}
+    public static int[] decodeMove(int move) {
+        return new int[]{(move >> 9) & 7, (move >> 6) & 7, (move >> 3) & 7, move & 7};
+    }
+
+    // Index of the first entry whose key is >= key
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = numEntries;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            // Keys are unsigned in Polyglot
+            if (Long.compareUnsigned(entries.getLong(mid * ENTRY_SIZE), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Returns every {move, weight} pair stored for a position
+    public ArrayList<int[]> lookup(long key) {
+        ArrayList<int[]> moves = new ArrayList<>();
+        for (int i = lowerBound(key); i < numEntries; i++) {
+            int offset = i * ENTRY_SIZE;
+            if (entries.getLong(offset) != key) {
+                break;
+            }
+            moves.add(new int[]{entries.getShort(offset + 8) & 0xFFFF,
+                entries.getShort(offset + 10) & 0xFFFF});
+        }
+        return moves;
+    }
+
+    // Picks a book move for the side to move, weighted by entry weight
+    // Returns the resulting state, or null if the position is not in the book
+    // (or the stored move is not legal here)
+    public State probe(BoardStateManager bm, State state, String sideToMove) {
+        ArrayList<int[]> moves = lookup(Zobrist.bookKey(state.getBoard(), sideToMove));
+        int totalWeight = 0;
+        for (int[] move : moves) {
+            totalWeight += move[1];
+        }
+        if (totalWeight == 0) {
+            return null;
+        }
+
+        int pick = random.nextInt(totalWeight);
+        for (int[] move : moves) {
+            pick -= move[1];
+            if (pick < 0) {
+                return bm.findSuccessor(state, sideToMove, decodeMove(move[0]));
+            }
+        }
+        return null;
+    }
+}
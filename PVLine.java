@@ -0,0 +1,24 @@
+import java.util.ArrayList;
+
+// One line of a multi-PV search: a root move, its score and the
+// principal variation that follows it
+public class PVLine {
+	private State state;
+	private int value;
+	private ArrayList<State> pv;
+
+	public PVLine(State state, int value) {
+		this.state = state;
+		this.value = value;
+		this.pv = new ArrayList<>();
+	}
+
+	// State after the root move
+	public State getState() { return state; }
+	public int getValue() { return value; }
+	// States along the variation, starting with getState()
+	public ArrayList<State> getPV() { return pv; }
+
+	public void setValue(int value) { this.value = value; }
+	public void setPV(ArrayList<State> pv) { this.pv = pv; }
+}
@@ -0,0 +1,55 @@
+// Compact binary form of a board: 64 squares, two per byte (32 bytes)
+// Nibbles: 0 empty, 1-6 white pnbrqk, 9-14 black PNBRQK
+public class PositionCodec {
+
+    public static final int SIZE = 32;
+
+    private static final String CODES = "_pnbrqk__PNBRQK";
+
+    public static void pack(char[][] board, byte[] out, int offset) {
+        for (int sq = 0; sq < 64; sq += 2) {
+            int lo = code(board[sq / 8][sq % 8]);
+            int hi = code(board[(sq + 1) / 8][(sq + 1) % 8]);
+            out[offset + sq / 2] = (byte) (lo | (hi << 4));
+        }
+    }
+
+    // Same, from the 64 squares row by row in one string (TexelTuner datasets)
+    public static void pack(String squares, byte[] out, int offset) {
+        for (int sq = 0; sq < 64; sq += 2) {
+            out[offset + sq / 2] = (byte) (code(squares.charAt(sq)) | (code(squares.charAt(sq + 1)) << 4));
+        }
+    }
+
+    public static byte[] pack(char[][] board) {
+        byte[] out = new byte[SIZE];
+        pack(board, out, 0);
+        return out;
+    }
+
+    public static char[][] unpack(byte[] in, int offset) {
+        char[][] board = new char[ChessAI.BOARD_SIZE][ChessAI.BOARD_SIZE];
+        for (int sq = 0; sq < 64; sq += 2) {
+            int packed = in[offset + sq / 2] & 0xff;
+            board[sq / 8][sq % 8] = piece(packed & 0xf);
+            board[(sq + 1) / 8][(sq + 1) % 8] = piece(packed >>> 4);
+        }
+        return board;
+    }
+
+    private static int code(char piece) {
+        int code = CODES.indexOf(piece);
+        if (code < 0) {
+            throw new IllegalArgumentException("Unknown piece " + piece);
+        }
+        return code;
+    }
+
+    private static char piece(int code) {
+        char piece = CODES.charAt(code);
+        if (code != 0 && piece == '_') {
+            throw new IllegalArgumentException("Bad square code " + code);
+        }
+        return piece;
+    }
+}
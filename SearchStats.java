@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.Locale;
+
+// Per-ply search counters with a JSON report
+// Counting is switched on with -Dchess.stats=true (ChessAI sets it for --stats).
+// ENABLED is a static final, so when it's off the JIT drops every
+// "if (SearchStats.ENABLED)" block and the search pays nothing.
+// Each BoardStateManager owns its own instance. Only negamax searches run by
+// that manager are counted: MCTS playouts and searches on SearchWorker
+// processes are not.
+//
+// Definitions, per ply of the main search:
+//   nodes        negamax nodes (quiescence nodes are in qNodes instead)
+//   leaves       nodes that searched no children: depth 0, mate, stalemate,
+//                TT cutoff, repetition or 50-move draw
+//   branchingFactor  nodes at the next ply / (nodes - leaves); children
+//                resolved by the tablebase are not nodes
+//   qNodes       quiescence nodes at this ply (below a depth 0 leaf)
+//   timeMs       time in this ply's nodes, not counting their main-search
+//                children (quiescence counts at the leaf that started it)
+public class SearchStats {
+
+    public static final boolean ENABLED = Boolean.getBoolean("chess.stats");
+
+    // Deepest ply tracked; deeper nodes are counted at the last slot
+    public static final int MAX_PLY = 64;
+
+    public final long[] nodes = new long[MAX_PLY];
+    public final long[] leaves = new long[MAX_PLY];
+    public final long[] betaCutoffs = new long[MAX_PLY];
+    public final long[] firstMoveCutoffs = new long[MAX_PLY];
+    public final long[] ttHits = new long[MAX_PLY];
+    public final long[] qnodes = new long[MAX_PLY];
+    // Time in nodes at each ply including everything below them
+    public final long[] nanos = new long[MAX_PLY];
+
+    private long startNanos = 0;
+    private long elapsedNanos = 0;
+
+    // Iterative deepening: {depth, nodes, nanos} per completed iteration
+    private final ArrayList<long[]> iterations = new ArrayList<>();
+
+    public static int slot(int ply) {
+        return Math.min(ply, MAX_PLY - 1);
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        elapsedNanos += System.nanoTime() - startNanos;
+    }
+
+    public void recordIteration(int depth, long iterationNodes, long nanos) {
+        iterations.add(new long[]{depth, iterationNodes, nanos});
+    }
+
+    public long totalNodes() {
+        long total = 0;
+        for (long n : nodes) total += n;
+        for (long n : qnodes) total += n;
+        return total;
+    }
+
+    // Formats a ratio, guarding against empty plies
+    // (Locale.ROOT: JSON needs a decimal point whatever the user's locale)
+    private static String ratio(long num, long den) {
+        return den == 0 ? "0" : String.format(Locale.ROOT, "%.4f", (double) num / den);
+    }
+
+    public String toJson() {
+        long total = totalNodes();
+        long elapsedMs = elapsedNanos / 1000000;
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"nodes\": ").append(total).append(",\n");
+        json.append("  \"elapsedMs\": ").append(elapsedMs).append(",\n");
+        json.append("  \"nps\": ").append(elapsedNanos == 0 ? 0 : total * 1000000000L / elapsedNanos).append(",\n");
+        json.append("  \"plies\": [");
+        // Multi-PV searches root moves itself, so ply 0 can be empty
+        int lastPly = MAX_PLY - 1;
+        while (lastPly >= 0 && nodes[lastPly] == 0 && qnodes[lastPly] == 0) lastPly--;
+        for (int ply = 0; ply <= lastPly; ply++) {
+            json.append(ply == 0 ? "\n" : ",\n");
+            long next = ply + 1 < MAX_PLY ? nodes[ply + 1] : 0;
+            long below = ply + 1 < MAX_PLY ? nanos[ply + 1] : 0;
+            json.append("    {\"ply\": ").append(ply)
+                .append(", \"nodes\": ").append(nodes[ply])
+                .append(", \"leaves\": ").append(leaves[ply])
+                .append(", \"betaCutoffs\": ").append(betaCutoffs[ply])
+                .append(", \"firstMoveCutoffRate\": ").append(ratio(firstMoveCutoffs[ply], betaCutoffs[ply]))
+                .append(", \"branchingFactor\": ").append(ratio(next, nodes[ply] - leaves[ply]))
+                .append(", \"ttHits\": ").append(ttHits[ply])
+                .append(", \"qNodes\": ").append(qnodes[ply])
+                .append(", \"timeMs\": ").append(String.format(Locale.ROOT, "%.3f", Math.max(0, nanos[ply] - below) / 1e6))
+                .append("}");
+        }
+        json.append("\n  ]");
+        if (!iterations.isEmpty()) {
+            json.append(",\n  \"iterations\": [");
+            for (int i = 0; i < iterations.size(); i++) {
+                long[] it = iterations.get(i);
+                json.append(i == 0 ? "\n" : ",\n");
+                json.append("    {\"depth\": ").append(it[0])
+                    .append(", \"nodes\": ").append(it[1])
+                    .append(", \"timeMs\": ").append(String.format(Locale.ROOT, "%.3f", it[2] / 1e6))
+                    .append("}");
+            }
+            json.append("\n  ]");
+        }
+        json.append("\n}\n");
+        return json.toString();
+    }
+}
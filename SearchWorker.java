@@ -0,0 +1,111 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+// Worker process for DistributedSearch
+// Listens on a TCP port and searches the positions a coordinator sends,
+// one at a time, with its own BoardStateManager (and TT if --hash is given,
+// emptied before every job)
+// Usage: java SearchWorker <port> [--hash <MB>]
+//
+// Protocol (big endian, DataInput/DataOutput):
+//   request:  'S', int id, 32-byte board (PositionCodec), byte side to move
+//             (0 white, 1 black), int score, byte halfmove clock, byte depth,
+//             byte flags (QUIESCENCE, NO_REPETITION), int alpha, int beta,
+//             UTF strategy
+//             'Q' closes the connection
+//   reply:    int id, int value (for the side to move), long move generations
+public class SearchWorker {
+
+    public static final byte SEARCH = 'S';
+    public static final byte QUIT = 'Q';
+
+    // Request flags
+    public static final int QUIESCENCE = 1;
+    public static final int NO_REPETITION = 2;
+
+    // Longest either end waits for the other (a reply, or the next request)
+    // before giving up on the connection
+    public static final int TIMEOUT_MS = 10 * 60 * 1000;
+
+    private final BoardStateManager bm = new BoardStateManager();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java SearchWorker <port> [--hash <MB>]");
+            System.exit(0);
+        }
+        java.util.HashMap<String, String> options = ChessAI.parseOptions(args, 1);
+        SearchWorker worker = new SearchWorker();
+        if (options.containsKey("hash")) {
+            worker.bm.tt = new TranspositionTable(Integer.parseInt(options.get("hash")));
+        }
+        int port = Integer.parseInt(args[0]);
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Worker listening on port " + port);
+            // One coordinator at a time
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(TIMEOUT_MS);
+                    System.out.println("Coordinator connected from " + socket.getRemoteSocketAddress());
+                    worker.serve(socket);
+                } catch (IOException e) {
+                    System.out.println("Connection lost: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        byte[] packed = new byte[PositionCodec.SIZE];
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            if (type == QUIT) return;
+            if (type != SEARCH) throw new IOException("Unknown request " + type);
+
+            int id = in.readInt();
+            in.readFully(packed);
+            String side = in.readByte() == 0 ? "white" : "black";
+            int score = in.readInt();
+            int clock = in.readByte();
+            int depth = in.readByte();
+            int flags = in.readByte();
+            int alpha = in.readInt();
+            int beta = in.readInt();
+            String strategy = in.readUTF();
+            if (depth < 0) throw new IOException("Bad depth " + depth);
+
+            char[][] board = PositionCodec.unpack(packed, 0);
+            // Searched positions are root children, so their mover is the other side
+            String mover = side.equals("white") ? "black" : "white";
+            State state = new State(board, score, mover, ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+            state.setHalfmoveClock(clock);
+            bm.quiescence = (flags & QUIESCENCE) != 0;
+            bm.repetitionDetection = (flags & NO_REPETITION) == 0;
+            // Jobs may come from different roots and settings
+            if (bm.tt != null) {
+                bm.tt.clear();
+            }
+            long startNodes = bm.numStates;
+            int value = bm.negamax(state, depth, alpha, beta, side.equals("white") ? 1 : -1, strategy).getValue();
+
+            out.writeInt(id);
+            out.writeInt(value);
+            out.writeLong(bm.numStates - startNodes);
+            out.flush();
+        }
+    }
+}
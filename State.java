@@ -8,6 +8,17 @@ public class State implements Comparable<State> {
 	private String color;
 	public int[] blackKingPos;
 	public int[] whiteKingPos;
+	// Zobrist hash of the board alone (no side to move); computed on demand
+	// unless the parent state handed it down incrementally
+	private long boardHash;
+	private boolean hasBoardHash = false;
+	// Plies since the last capture or pawn move (for the 50-move rule)
+	private int halfmoveClock = 0;
+	// NNUE hidden layer for this board; null until first needed, then
+	// derived from the parent's (see Nnue.accumulator)
+	private short[] accumulator;
+	private State nnueParent;
+	private int nnueMove;
 
 	// State constructor
 	public State(char[][] board, int score, String colorOfStateMover,
@@ -46,6 +57,36 @@ public class State implements Comparable<State> {
 		return score;
 	}
 
+	// Position hash with the given side to move
+	public long getHash(String sideToMove) {
+		if (!hasBoardHash) {
+			setBoardHash(Zobrist.hash(board, "black"));
+		}
+		return sideToMove.equals("white") ? boardHash ^ Zobrist.TURN_KEY : boardHash;
+	}
+
+	public boolean hasBoardHash() { return hasBoardHash; }
+	public long getBoardHash() { return getHash("black"); }
+
+	public void setBoardHash(long boardHash) {
+		this.boardHash = boardHash;
+		this.hasBoardHash = true;
+	}
+
+	public int getHalfmoveClock() { return halfmoveClock; }
+	public void setHalfmoveClock(int halfmoveClock) { this.halfmoveClock = halfmoveClock; }
+
+	public short[] getAccumulator() { return accumulator; }
+	public void setAccumulator(short[] accumulator) { this.accumulator = accumulator; }
+
+	// Parent and move (OpeningBook encoding) this board came from, for the NNUE update
+	public State getNnueParent() { return nnueParent; }
+	public int getNnueMove() { return nnueMove; }
+	public void setNnueParent(State parent, int move) {
+		this.nnueParent = parent;
+		this.nnueMove = move;
+	}
+
 	public String getColorOfStateMover() {
 		return color;
 	}
@@ -0,0 +1,154 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+// Probes endgame tables written by TablebaseGenerator
+// A table holds one byte per (piece squares, side to move):
+//   0        draw (or illegal position)
+//   v > 0    side to move mates in v plies
+//   v < 0    side to move is mated in (-v - 1) plies
+public class Tablebase {
+
+    // Same value negamax uses for a checkmate
+    public static final int MATE_SCORE = 10000000;
+    public static final int MAX_PIECES = 4;
+
+    // Canonical piece order inside a signature
+    private static final String ORDER = "kqrbnp";
+
+    private final String directory;
+    // Loaded tables by signature; null marks a table that is not on disk
+    private final HashMap<String, byte[]> tables = new HashMap<>();
+
+    public Tablebase(String directory) {
+        this.directory = directory;
+    }
+
+    // Material signature, e.g. "kqvk" for white king + queen vs black king
+    public static String signature(char[][] board) {
+        int[] white = new int[ORDER.length()];
+        int[] black = new int[ORDER.length()];
+        for (int i = 0; i < ChessAI.BOARD_SIZE; i++) {
+            for (int j = 0; j < ChessAI.BOARD_SIZE; j++) {
+                char piece = board[i][j];
+                if (piece == '_') continue;
+                if (Character.isLowerCase(piece)) {
+                    white[ORDER.indexOf(piece)]++;
+                } else {
+                    black[ORDER.indexOf(Character.toLowerCase(piece))]++;
+                }
+            }
+        }
+        StringBuilder sig = new StringBuilder();
+        for (int k = 0; k < ORDER.length(); k++) {
+            for (int n = 0; n < white[k]; n++) sig.append(ORDER.charAt(k));
+        }
+        sig.append('v');
+        for (int k = 0; k < ORDER.length(); k++) {
+            for (int n = 0; n < black[k]; n++) sig.append(ORDER.charAt(k));
+        }
+        return sig.toString();
+    }
+
+    // Board pieces of a signature in index order (white lowercase, black uppercase)
+    public static char[] pieces(String signature) {
+        int split = signature.indexOf('v');
+        char[] pieces = new char[signature.length() - 1];
+        for (int i = 0; i < split; i++) {
+            pieces[i] = signature.charAt(i);
+        }
+        for (int i = split + 1; i < signature.length(); i++) {
+            pieces[i - 1] = Character.toUpperCase(signature.charAt(i));
+        }
+        return pieces;
+    }
+
+    public static int tableSize(String signature) {
+        return (1 << (6 * (signature.length() - 1))) * 2;
+    }
+
+    // Table index of a board whose material matches the signature
+    public static int index(char[][] board, char[] pieces, String sideToMove) {
+        int index = 0;
+        boolean[] used = new boolean[ChessAI.BOARD_SIZE * ChessAI.BOARD_SIZE];
+        for (char piece : pieces) {
+            // Identical pieces take squares in scan order
+            for (int sq = 0; sq < used.length; sq++) {
+                if (!used[sq] && board[sq / ChessAI.BOARD_SIZE][sq % ChessAI.BOARD_SIZE] == piece) {
+                    used[sq] = true;
+                    index = index * 64 + sq;
+                    break;
+                }
+            }
+        }
+        return index * 2 + (sideToMove.equals("white") ? 0 : 1);
+    }
+
+    public static String fileName(String signature) {
+        return signature + ".tb";
+    }
+
+    // Lazily loads a table; returns null when it was never generated
+    public synchronized byte[] table(String signature) {
+        if (!tables.containsKey(signature)) {
+            byte[] data = null;
+            File file = new File(directory, fileName(signature));
+            if (file.exists()) {
+                try {
+                    data = Files.readAllBytes(file.toPath());
+                } catch (IOException e) {
+                    System.out.println("Could not read tablebase " + file + ": " + e.getMessage());
+                }
+            }
+            tables.put(signature, data);
+        }
+        return tables.get(signature);
+    }
+
+    // Adds a table that was just generated, replacing a cached miss
+    public synchronized void put(String signature, byte[] data) {
+        tables.put(signature, data);
+    }
+
+    // Counts the pieces (kings included) on a board
+    public static int countPieces(char[][] board) {
+        int count = 0;
+        for (int i = 0; i < ChessAI.BOARD_SIZE; i++) {
+            for (int j = 0; j < ChessAI.BOARD_SIZE; j++) {
+                if (board[i][j] != '_') count++;
+            }
+        }
+        return count;
+    }
+
+    // Converts a stored entry to a negamax score for the side to move
+    public static int toScore(byte value) {
+        if (value > 0) {
+            return MATE_SCORE - value;
+        } else if (value < 0) {
+            return -MATE_SCORE + (-value - 1);
+        }
+        return 0;
+    }
+
+    // Returns true if the position can be answered from a table
+    public boolean covers(State state) {
+        char[][] board = state.getBoard();
+        if (countPieces(board) > MAX_PIECES) {
+            return false;
+        }
+        // Bare kings need no table
+        return countPieces(board) == 2 || table(signature(board)) != null;
+    }
+
+    // Exact score for the side to move; only valid if covers(state)
+    public int probe(State state, String sideToMove) {
+        char[][] board = state.getBoard();
+        if (countPieces(board) == 2) {
+            return 0;
+        }
+        String signature = signature(board);
+        return toScore(table(signature)[index(board, pieces(signature), sideToMove)]);
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Generates endgame tables by retrograde analysis using the engine's own move rules
+// Usage: java TablebaseGenerator <directory> <signature> [<signature> ...]
+// Signatures list white then black pieces, e.g. kqvk, krvk, kpvk, kqvkr
+public class TablebaseGenerator {
+
+    // Status of each table entry while generating
+    private static final byte UNKNOWN = 0;
+    private static final byte RESOLVED = 1;
+    private static final byte ILLEGAL = 2;
+    private static final byte PENDING = 3;
+    // Mirror image of another index, filled in at the end
+    private static final byte SYMMETRIC = 4;
+    // Child count of a position that can't be lost (a capture draws or wins)
+    private static final byte NEVER_LOST = Byte.MAX_VALUE;
+
+    // Square maps under the board's symmetries (the rules have no castling,
+    // so files can always be mirrored; without pawns ranks and the diagonal
+    // can be too)
+    private static final int[][] TRANSFORMS = new int[8][64];
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq / 8, c = sq % 8;
+            int[] images = {r * 8 + c, r * 8 + 7 - c, (7 - r) * 8 + c, (7 - r) * 8 + 7 - c,
+                c * 8 + r, c * 8 + 7 - r, (7 - c) * 8 + r, (7 - c) * 8 + 7 - r};
+            for (int t = 0; t < 8; t++) TRANSFORMS[t][sq] = images[t];
+        }
+    }
+
+    private final String directory;
+    private final Tablebase tablebase;
+
+    // Move generation is not thread safe, so each worker gets its own manager
+    private final ThreadLocal<BoardStateManager> managers =
+        ThreadLocal.withInitial(BoardStateManager::new);
+
+    public TablebaseGenerator(String directory) {
+        this.directory = directory;
+        this.tablebase = new Tablebase(directory);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java TablebaseGenerator <directory> <signature> [<signature> ...]");
+            System.exit(0);
+        }
+        new File(args[0]).mkdirs();
+        TablebaseGenerator generator = new TablebaseGenerator(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            generator.generate(args[i]);
+        }
+    }
+
+    // Generates a table (and any smaller table a capture can reach) unless already on disk
+    public void generate(String signature) throws IOException {
+        if (tablebase.table(signature) != null) {
+            return;
+        }
+        if (signature.length() - 1 > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("Too many pieces: " + signature);
+        }
+
+        // Sub-tables first, so captures can be looked up
+        int split = signature.indexOf('v');
+        for (int i = 0; i < signature.length(); i++) {
+            char c = signature.charAt(i);
+            if (c == 'v' || i == 0 || i == split + 1) continue; // Kings are never captured
+            String sub = signature.substring(0, i) + signature.substring(i + 1);
+            if (sub.length() - 1 > 2) {
+                generate(sub);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        byte[] values = compute(signature);
+        try (FileOutputStream out = new FileOutputStream(new File(directory, Tablebase.fileName(signature)))) {
+            out.write(values);
+        }
+        // Bigger tables look this one up for their captures
+        tablebase.put(signature, values);
+        System.out.println("Generated " + signature + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private byte[] compute(String signature) {
+        char[] pieces = Tablebase.pieces(signature);
+        int size = Tablebase.tableSize(signature);
+        int symmetries = signature.indexOf('p') < 0 ? 8 : 2;
+        byte[] values = new byte[size];
+        byte[] status = new byte[size];
+        // Pass at which a position's captures alone can settle it (0 if never);
+        // captures land in finished tables, so no same-table change flags it
+        byte[] recheck = new byte[size];
+        // Distinct same-table children (up to symmetry), and how many of them
+        // are known wins for the opponent; a position can only be lost once
+        // they match, so it isn't searched again before that
+        byte[] children = new byte[size];
+        byte[] childWins = new byte[size];
+
+        // Pass 0: illegal positions, checkmates and stalemates, plus recheck
+        // passes from capture values. This is the only pass that generates
+        // moves for every position; only the smallest index of each set of
+        // mirror images is searched.
+        IntStream.range(0, size).parallel().forEach(idx -> {
+            State state = decode(idx, pieces);
+            String side = sideToMove(idx);
+            if (state == null) {
+                status[idx] = ILLEGAL;
+                return;
+            }
+            // Also covers identical pieces out of scan order
+            if (canonical(idx, pieces, symmetries) != idx) {
+                status[idx] = SYMMETRIC;
+                return;
+            }
+            if (!isLegal(state, side)) {
+                status[idx] = ILLEGAL;
+                return;
+            }
+            ArrayList<int[]> checkList = new ArrayList<>();
+            ArrayList<State> successors = managers.get().computeAllStates(state, side, checkList);
+            if (successors.isEmpty()) {
+                values[idx] = (byte) (checkList.isEmpty() ? 0 : -1);
+                status[idx] = RESOLVED;
+                return;
+            }
+            String other = side.equals("white") ? "black" : "white";
+            int win = Integer.MAX_VALUE;
+            int loss = 0;
+            boolean drawCapture = false;
+            int[] same = new int[successors.size()];
+            int numSame = 0;
+            for (State child : successors) {
+                char[][] board = child.getBoard();
+                if (Tablebase.countPieces(board) == pieces.length) {
+                    same[numSame++] = canonical(Tablebase.index(board, pieces, other), pieces, symmetries);
+                    continue;
+                }
+                byte v = lookup(board, pieces, signature, symmetries, other, values, status);
+                if (v < 0) {
+                    win = Math.min(win, -v);
+                } else if (v == 0) {
+                    drawCapture = true;
+                } else {
+                    loss = Math.max(loss, v + 1);
+                }
+            }
+            int pass = win != Integer.MAX_VALUE ? win : drawCapture ? 0 : loss;
+            recheck[idx] = (byte) Math.min(pass, Byte.MAX_VALUE);
+            boolean canLose = win == Integer.MAX_VALUE && !drawCapture;
+            children[idx] = canLose ? (byte) distinct(same, numSame).length : NEVER_LOST;
+        });
+        int lastRecheck = 0;
+        for (byte r : recheck) lastRecheck = Math.max(lastRecheck, r);
+
+        // Pass n resolves exactly the positions won or lost in n plies. Only
+        // positions with a child resolved in pass n - 1 (found by unmaking
+        // moves) or a capture due now can change: parents of a lost child
+        // may win, parents whose children are now all won may be lost.
+        byte[] candidate = new byte[size];
+        int[] resolved = collect(status, RESOLVED);
+        for (int n = 1; n < Byte.MAX_VALUE; n++) {
+            final int plies = n;
+            for (int idx : resolved) {
+                if (values[idx] == 0) continue;
+                boolean childLost = values[idx] < 0;
+                for (int parent : parents(idx, pieces, symmetries)) {
+                    if (status[parent] != UNKNOWN) continue;
+                    if (childLost) {
+                        candidate[parent] = (byte) plies;
+                    } else if (children[parent] != NEVER_LOST && ++childWins[parent] >= children[parent]) {
+                        candidate[parent] = (byte) plies;
+                    }
+                }
+            }
+            IntStream.range(0, size).parallel().forEach(idx -> {
+                if (status[idx] == UNKNOWN && (candidate[idx] == plies || recheck[idx] == plies)) {
+                    resolve(idx, plies, pieces, signature, symmetries, values, status);
+                }
+            });
+
+            resolved = collect(status, PENDING);
+            for (int idx : resolved) status[idx] = RESOLVED;
+            if (resolved.length == 0 && n >= lastRecheck) {
+                break;
+            }
+        }
+        // Whatever is still unknown is a draw, which is already stored as 0
+        for (int idx = 0; idx < size; idx++) {
+            if (status[idx] == SYMMETRIC) values[idx] = values[canonical(idx, pieces, symmetries)];
+        }
+        return values;
+    }
+
+    // Marks idx PENDING with its value if it is won or lost in exactly plies
+    private void resolve(int idx, int plies, char[] pieces, String signature, int symmetries,
+            byte[] values, byte[] status) {
+        String side = sideToMove(idx);
+        String other = side.equals("white") ? "black" : "white";
+        boolean win = false;
+        boolean allLost = true;
+        // Only values settled in earlier passes count
+        for (State child : managers.get().computeAllStates(decode(idx, pieces), side, new ArrayList<>())) {
+            Byte childValue = lookup(child.getBoard(), pieces, signature, symmetries, other, values, status);
+            if (childValue == null) {
+                allLost = false;
+                continue;
+            }
+            byte v = childValue;
+            if (v < 0 && -v - 1 <= plies - 1) {
+                win = true;
+                break;
+            }
+            if (v <= 0 || v > plies - 1) {
+                allLost = false;
+            }
+        }
+        if (win) {
+            values[idx] = (byte) plies;
+        } else if (allLost) {
+            values[idx] = (byte) (-plies - 1);
+        } else {
+            return;
+        }
+        status[idx] = PENDING;
+    }
+
+    // Distinct canonical positions one move before idx
+    private static int[] parents(int idx, char[] pieces, int symmetries) {
+        ArrayList<Integer> found = predecessors(idx, pieces);
+        int[] parents = new int[found.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = canonical(found.get(i), pieces, symmetries);
+        }
+        return distinct(parents, parents.length);
+    }
+
+    // Sorted distinct values among the first n
+    private static int[] distinct(int[] values, int n) {
+        int[] sorted = Arrays.copyOf(values, n);
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[count++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    // Indices whose status is the given one
+    private static int[] collect(byte[] status, byte wanted) {
+        int count = 0;
+        for (byte s : status) {
+            if (s == wanted) count++;
+        }
+        int[] out = new int[count];
+        count = 0;
+        for (int idx = 0; idx < status.length; idx++) {
+            if (status[idx] == wanted) out[count++] = idx;
+        }
+        return out;
+    }
+
+    private static final int[][] KING_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {-1, 2}, {-2, 1}, {1, -2}, {2, -1}, {-1, -2}, {-2, -1}};
+
+    // Indices of positions one non-capturing move before idx (captures come
+    // from bigger tables). A superset is fine: candidates are checked with
+    // real move generation, and illegal ones were marked in pass 0.
+    private static ArrayList<Integer> predecessors(int idx, char[] pieces) {
+        int n = pieces.length;
+        int[] squares = new int[n];
+        boolean[] occupied = new boolean[64];
+        int packed = idx >>> 1;
+        for (int p = n - 1; p >= 0; p--) {
+            squares[p] = packed & 63;
+            packed >>>= 6;
+            occupied[squares[p]] = true;
+        }
+        // The side that moved into idx is to move in the parent
+        int parentSide = (idx & 1) ^ 1;
+        boolean whiteMoved = parentSide == 0;
+
+        ArrayList<Integer> parents = new ArrayList<>();
+        for (int p = 0; p < n; p++) {
+            if (Character.isLowerCase(pieces[p]) != whiteMoved) continue;
+            int row = squares[p] / 8;
+            int col = squares[p] % 8;
+            char type = Character.toLowerCase(pieces[p]);
+            ArrayList<Integer> from = new ArrayList<>();
+            if (type == 'k' || type == 'n') {
+                for (int[] step : type == 'k' ? KING_STEPS : KNIGHT_STEPS) {
+                    addSquare(row + step[0], col + step[1], occupied, from);
+                }
+            } else if (type == 'p') {
+                // White pawns move up the rows, black down; both may have come two from the start
+                int back = whiteMoved ? -1 : 1;
+                if (addSquare(row + back, col, occupied, from) && row == (whiteMoved ? 3 : 4)) {
+                    addSquare(row + 2 * back, col, occupied, from);
+                }
+            } else {
+                for (int[] step : KING_STEPS) {
+                    boolean diagonal = step[0] != 0 && step[1] != 0;
+                    if (type == 'r' && diagonal || type == 'b' && !diagonal) continue;
+                    for (int r = row + step[0], c = col + step[1];
+                            addSquare(r, c, occupied, from); r += step[0], c += step[1]) {
+                    }
+                }
+            }
+            for (int sq : from) {
+                int[] moved = squares.clone();
+                moved[p] = sq;
+                parents.add(index(moved, pieces, parentSide));
+            }
+        }
+        return parents;
+    }
+
+    // Adds (row, col) if it is on the board and empty
+    private static boolean addSquare(int row, int col, boolean[] occupied, ArrayList<Integer> out) {
+        if (row < 0 || row >= 8 || col < 0 || col >= 8 || occupied[row * 8 + col]) return false;
+        out.add(row * 8 + col);
+        return true;
+    }
+
+    // Smallest index among the position's first symmetries mirror images
+    private static int canonical(int idx, char[] pieces, int symmetries) {
+        int n = pieces.length;
+        int[] squares = new int[n];
+        int packed = idx >>> 1;
+        for (int p = n - 1; p >= 0; p--) {
+            squares[p] = packed & 63;
+            packed >>>= 6;
+        }
+        int best = Integer.MAX_VALUE;
+        int[] image = new int[n];
+        for (int t = 0; t < symmetries; t++) {
+            for (int p = 0; p < n; p++) image[p] = TRANSFORMS[t][squares[p]];
+            best = Math.min(best, index(image, pieces, idx & 1));
+        }
+        return best;
+    }
+
+    // Same index Tablebase.index gives: identical pieces in square order
+    private static int index(int[] squares, char[] pieces, int side) {
+        for (int p = 1; p < pieces.length; p++) {
+            for (int q = p; q > 0 && pieces[q] == pieces[q - 1] && squares[q] < squares[q - 1]; q--) {
+                int t = squares[q];
+                squares[q] = squares[q - 1];
+                squares[q - 1] = t;
+            }
+        }
+        int index = 0;
+        for (int sq : squares) {
+            index = index * 64 + sq;
+        }
+        return index * 2 + side;
+    }
+
+    // Value of a successor from an earlier pass or a smaller table; null if not settled yet
+    private Byte lookup(char[][] board, char[] pieces, String signature, int symmetries, String sideToMove,
+        byte[] values, byte[] status) {
+        int count = Tablebase.countPieces(board);
+        if (count == pieces.length) {
+            int childIdx = canonical(Tablebase.index(board, pieces, sideToMove), pieces, symmetries);
+            return status[childIdx] == RESOLVED ? values[childIdx] : null;
+        }
+        if (count == 2) {
+            return 0;
+        }
+        String sub = Tablebase.signature(board);
+        return tablebase.table(sub)[Tablebase.index(board, Tablebase.pieces(sub), sideToMove)];
+    }
+
+    private static String sideToMove(int idx) {
+        return (idx & 1) == 0 ? "white" : "black";
+    }
+
+    // Builds the state for a table index; null if two pieces share a square
+    private static State decode(int idx, char[] pieces) {
+        char[][] board = new char[ChessAI.BOARD_SIZE][ChessAI.BOARD_SIZE];
+        for (char[] row : board) {
+            Arrays.fill(row, '_');
+        }
+        int squares = idx >>> 1;
+        for (int p = pieces.length - 1; p >= 0; p--) {
+            int sq = squares & 63;
+            squares >>>= 6;
+            int row = sq / ChessAI.BOARD_SIZE;
+            int col = sq % ChessAI.BOARD_SIZE;
+            if (board[row][col] != '_') {
+                return null;
+            }
+            board[row][col] = pieces[p];
+        }
+        return new State(board, 0, sideToMove(idx), ChessAI.findPiece(board, 'K'), ChessAI.findPiece(board, 'k'));
+    }
+
+    // Kings may not touch and the side that just moved may not be in check
+    private boolean isLegal(State state, String sideToMove) {
+        int[] white = state.getWhiteKingPos();
+        int[] black = state.getBlackKingPos();
+        if (Math.abs(white[0] - black[0]) <= 1 && Math.abs(white[1] - black[1]) <= 1) {
+            return false;
+        }
+        String other = sideToMove.equals("white") ? "black" : "white";
+        return managers.get().computeCheckAndPinPositions(state.getBoard(),
+            other.equals("black") ? black : white, other).get(0).isEmpty();
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Texel-style tuning of the evaluation against game results
+// Minimizes the mean squared error between each position's result and
+// sigmoid(K * eval). K is fitted first with the current values, then the
+// parameters follow the gradient (Adam), one parallel pass over the data
+// per step. The result is written as a piece value table for ChessAI.
+//
+// Dataset: one position per line, the 64 board squares row by row (same
+// letters as the .in files, '_' empty) then the result for white
+// (1-0, 0-1, 1/2-1/2, or 1, 0, 0.5):
+//   ______qk__Q___________P_p_...______K_ 1-0
+//
+// Usage: java TexelTuner <dataset> <output> [iterations] [scale]
+// scale is the value of a pawn in the written table (default 100, centipawns;
+// the engine takes the pawn's value as its unit, so any scale loads)
+public class TexelTuner {
+
+    // Tuned terms; eval = sum of params[i] * features[i] (white minus black)
+    // New positional terms go here and in features()
+    public static final String PIECES = "pnbrq";
+    public static final int NUM_PARAMS = PIECES.length();
+
+    // Positions per parallel work item
+    private static final int CHUNK = 16384;
+
+    // Boards in PositionCodec form: 0 empty, 1-6 white pnbrqk, 9-14 black
+    private byte[] boards = new byte[PositionCodec.SIZE * 1024];
+    // Result for white in half points: 0 loss, 1 draw, 2 win
+    private byte[] results = new byte[1024];
+    private int size = 0;
+
+    public int size() { return size; }
+
+    public void load(String filename) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int space = line.indexOf(' ');
+                if (space != 64) {
+                    throw new IOException(filename + ":" + lineNumber + ": expected 64 squares and a result");
+                }
+                add(line.substring(0, 64), parseResult(line.substring(65).trim(), filename, lineNumber));
+            }
+        }
+    }
+
+    private static int parseResult(String result, String filename, int lineNumber) throws IOException {
+        switch (result) {
+            case "1-0": case "1": case "1.0": return 2;
+            case "0-1": case "0": case "0.0": return 0;
+            case "1/2-1/2": case "0.5": return 1;
+            default: throw new IOException(filename + ":" + lineNumber + ": bad result " + result);
+        }
+    }
+
+    private void add(String squares, int result) {
+        if (size == results.length) {
+            results = Arrays.copyOf(results, size * 2);
+            boards = Arrays.copyOf(boards, size * 2 * PositionCodec.SIZE);
+        }
+        PositionCodec.pack(squares, boards, size * PositionCodec.SIZE);
+        results[size++] = (byte) result;
+    }
+
+    // Feature values of position index, white minus black
+    private void features(int index, int[] out) {
+        Arrays.fill(out, 0);
+        int base = index * PositionCodec.SIZE;
+        for (int b = 0; b < PositionCodec.SIZE; b++) {
+            int packed = boards[base + b] & 0xff;
+            addPiece(packed & 0xf, out);
+            addPiece(packed >>> 4, out);
+        }
+    }
+
+    private static void addPiece(int code, int[] out) {
+        if (code == 0) return;
+        int type = (code & 7) - 1;
+        // Kings carry no value
+        if (type >= NUM_PARAMS) return;
+        out[type] += (code < 8) ? 1 : -1;
+    }
+
+    private static double sigmoid(double k, double eval) {
+        return 1.0 / (1.0 + Math.exp(-k * eval));
+    }
+
+    // Mean squared error, and its gradient when gradient != null
+    // Each chunk sums into its own array; the chunks run on the common fork/join pool
+    public double error(double[] params, double k, double[] gradient) {
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        double[] total = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            double[] sums = new double[NUM_PARAMS + 1];
+            int[] f = new int[NUM_PARAMS];
+            int end = Math.min(size, (c + 1) * CHUNK);
+            for (int i = c * CHUNK; i < end; i++) {
+                features(i, f);
+                double eval = 0;
+                for (int p = 0; p < NUM_PARAMS; p++) {
+                    eval += params[p] * f[p];
+                }
+                double s = sigmoid(k, eval);
+                double diff = s - results[i] / 2.0;
+                sums[NUM_PARAMS] += diff * diff;
+                if (gradient != null) {
+                    double g = 2 * diff * s * (1 - s) * k;
+                    for (int p = 0; p < NUM_PARAMS; p++) {
+                        sums[p] += g * f[p];
+                    }
+                }
+            }
+            return sums;
+        }).reduce(new double[NUM_PARAMS + 1], (a, b) -> {
+            double[] sum = new double[NUM_PARAMS + 1];
+            for (int p = 0; p <= NUM_PARAMS; p++) sum[p] = a[p] + b[p];
+            return sum;
+        });
+        if (gradient != null) {
+            for (int p = 0; p < NUM_PARAMS; p++) {
+                gradient[p] = total[p] / size;
+            }
+        }
+        return total[NUM_PARAMS] / size;
+    }
+
+    // Golden section search for the K that best fits the untuned values
+    public double fitK(double[] params) {
+        double lo = 0.01, hi = 10.0;
+        final double ratio = (Math.sqrt(5) - 1) / 2;
+        double a = hi - ratio * (hi - lo), b = lo + ratio * (hi - lo);
+        double ea = error(params, a, null), eb = error(params, b, null);
+        for (int i = 0; i < 40; i++) {
+            if (ea < eb) {
+                hi = b; b = a; eb = ea;
+                a = hi - ratio * (hi - lo);
+                ea = error(params, a, null);
+            } else {
+                lo = a; a = b; ea = eb;
+                b = lo + ratio * (hi - lo);
+                eb = error(params, b, null);
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    // Adam steps on the parameters (in pawns), K fixed
+    public double[] tune(double[] start, double k, int iterations) {
+        final double rate = 0.05, beta1 = 0.9, beta2 = 0.999, eps = 1e-8;
+        double[] params = start.clone();
+        double[] m = new double[NUM_PARAMS];
+        double[] v = new double[NUM_PARAMS];
+        double[] gradient = new double[NUM_PARAMS];
+        for (int t = 1; t <= iterations; t++) {
+            double err = error(params, k, gradient);
+            for (int p = 0; p < NUM_PARAMS; p++) {
+                m[p] = beta1 * m[p] + (1 - beta1) * gradient[p];
+                v[p] = beta2 * v[p] + (1 - beta2) * gradient[p] * gradient[p];
+                double mHat = m[p] / (1 - Math.pow(beta1, t));
+                double vHat = v[p] / (1 - Math.pow(beta2, t));
+                params[p] -= rate * mHat / (Math.sqrt(vHat) + eps);
+            }
+            if (t % 50 == 0 || t == iterations) {
+                System.out.println(String.format("iteration %d: error %.6f  %s", t, err, format(params)));
+            }
+        }
+        return params;
+    }
+
+    private static String format(double[] params) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < NUM_PARAMS; p++) {
+            sb.append(String.format("%c=%.3f ", PIECES.charAt(p), params[p]));
+        }
+        return sb.toString().trim();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java TexelTuner <dataset> <output> [iterations] [scale]");
+            System.exit(0);
+        }
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int scale = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        TexelTuner tuner = new TexelTuner();
+        long start = System.currentTimeMillis();
+        tuner.load(args[0]);
+        System.out.println("Loaded " + tuner.size() + " positions in " + (System.currentTimeMillis() - start) + "ms");
+
+        // Current table, in pawns
+        double[] params = new double[NUM_PARAMS];
+        double pawn = BoardStateManager.pieceVal.get('p');
+        for (int p = 0; p < NUM_PARAMS; p++) {
+            params[p] = BoardStateManager.pieceVal.get(PIECES.charAt(p)) / pawn;
+        }
+        double k = tuner.fitK(params);
+        System.out.println(String.format("K = %.4f, starting error %.6f", k, tuner.error(params, k, null)));
+
+        start = System.currentTimeMillis();
+        params = tuner.tune(params, k, iterations);
+        System.out.println("Tuned in " + (System.currentTimeMillis() - start) + "ms");
+
+        try (FileWriter out = new FileWriter(args[1])) {
+            out.write("# Piece values tuned by TexelTuner on " + tuner.size() + " positions\n");
+            out.write(String.format("# K = %.4f, error %.6f\n", k, tuner.error(params, k, null)));
+            for (int p = 0; p < NUM_PARAMS; p++) {
+                out.write(PIECES.charAt(p) + " " + Math.max(1, Math.round(params[p] * scale)) + "\n");
+            }
+        }
+        System.out.println("Wrote " + args[1]);
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Transposition table sized in MB and kept off-heap, so even a multi-GB
+// table adds nothing for the garbage collector to trace
+// Each 16 byte entry holds (key ^ data) and data, where data packs:
+//   value (32 bits) | move (16) | depth (8) | generation (6) | bound (2)
+// Xoring the key with the data lets a reader detect an entry that another
+// thread was writing at the same time, without any locking
+// Stored values are only valid for searches with the same score offset
+// (see BoardStateManager.scoreOffset), so the table remembers it
+public class TranspositionTable {
+
+    public static final int ENTRY_SIZE = 16;
+
+    // Bound types
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    // Largest single direct buffer we allocate
+    private static final int CHUNK_BYTES = 1 << 30;
+    private static final int CHUNK_SHIFT = 26; // entries per chunk = CHUNK_BYTES / ENTRY_SIZE
+
+    // File header: magic, entry count, generation, score offset
+    private static final int MAGIC = 0x43485432; // "CHT2"
+    private static final int HEADER_SIZE = 20;
+
+    private ByteBuffer[] chunks;
+    private long numEntries;
+    private int generation = 0;
+    // Integer.MIN_VALUE until the first search
+    private int scoreOffset = Integer.MIN_VALUE;
+
+    public TranspositionTable(int sizeMB) {
+        allocate(sizeMB);
+    }
+
+    // Rounds down to a power of two entries so the index is a mask
+    private void allocate(int sizeMB) {
+        long bytes = Math.max(1L, sizeMB) * 1024 * 1024;
+        long totalBytes = Long.highestOneBit(bytes / ENTRY_SIZE) * ENTRY_SIZE;
+        int numChunks = (int) ((totalBytes + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        ByteBuffer[] allocated = new ByteBuffer[numChunks];
+        try {
+            for (int i = 0; i < numChunks; i++) {
+                allocated[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_BYTES, totalBytes - (long) i * CHUNK_BYTES));
+            }
+        } catch (OutOfMemoryError e) {
+            // Direct buffers are capped by -XX:MaxDirectMemorySize (default: the
+            // -Xmx heap size), not by the heap itself; the old table is kept
+            throw new IllegalArgumentException("Cannot allocate a " + (totalBytes >> 20)
+                + "MB hash table off-heap: " + e.getMessage()
+                + ". Run java with -XX:MaxDirectMemorySize=" + ((totalBytes >> 20) + 64)
+                + "m or higher, or use a smaller --hash", e);
+        }
+        chunks = allocated;
+        numEntries = totalBytes / ENTRY_SIZE;
+    }
+
+    public long sizeBytes() {
+        return numEntries * ENTRY_SIZE;
+    }
+
+    // Replaces the table with an empty one of the new size
+    public void resize(int sizeMB) {
+        EngineEvents.TableResize event = new EngineEvents.TableResize();
+        event.begin();
+        long oldBytes = sizeBytes();
+        allocate(sizeMB);
+        event.oldBytes = oldBytes;
+        event.newBytes = sizeBytes();
+        event.commit();
+    }
+
+    public void clear() {
+        for (ByteBuffer chunk : chunks) {
+            for (int i = 0; i < chunk.capacity(); i += 8) {
+                chunk.putLong(i, 0L);
+            }
+        }
+        generation = 0;
+    }
+
+    // Called once per search so older entries can be replaced first
+    // (and only suggest a move; see isCurrent)
+    public void newSearch() {
+        generation = (generation + 1) & 63;
+    }
+
+    // True if the entry was stored since the last newSearch(); only those
+    // bounds may end a node
+    public boolean isCurrent(long data) {
+        return generation(data) == generation;
+    }
+
+    public int getScoreOffset() {
+        return scoreOffset;
+    }
+
+    // Called with the root's offset before each search; values stored for
+    // another offset would be off by the difference, so they are dropped
+    public void setScoreOffset(int offset) {
+        if (scoreOffset != Integer.MIN_VALUE && offset != scoreOffset) {
+            clear();
+        }
+        scoreOffset = offset;
+    }
+
+    private ByteBuffer chunk(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)];
+    }
+
+    private int offset(long index) {
+        return (int) (index & ((1L << CHUNK_SHIFT) - 1)) * ENTRY_SIZE;
+    }
+
+    private long indexOf(long key) {
+        return key & (numEntries - 1);
+    }
+
+    // Returns the packed data for a key, or 0 if it is not stored
+    // (0 is never a valid entry, since the bound is always non-zero)
+    public long probe(long key) {
+        long index = indexOf(key);
+        ByteBuffer chunk = chunk(index);
+        int offset = offset(index);
+        long data = chunk.getLong(offset + 8);
+        if ((chunk.getLong(offset) ^ data) != key) {
+            return 0L;
+        }
+        return data;
+    }
+
+    // Depth-preferred replacement, but anything from an older search goes
+    public void store(long key, int value, int move, int depth, int bound) {
+        long index = indexOf(key);
+        ByteBuffer chunk = chunk(index);
+        int offset = offset(index);
+        long old = chunk.getLong(offset + 8);
+        boolean sameKey = (chunk.getLong(offset) ^ old) == key;
+        if (old != 0L && !sameKey && generation(old) == generation && depth(old) > depth) {
+            return;
+        }
+        long data = ((long) value << 32) | ((long) (move & 0xFFFF) << 16)
+            | ((long) (depth & 0xFF) << 8) | (generation << 2) | bound;
+        chunk.putLong(offset, key ^ data);
+        chunk.putLong(offset + 8, data);
+    }
+
+    // Accessors for packed data
+    public static int value(long data) { return (int) (data >> 32); }
+    public static int move(long data) { return (int) (data >>> 16) & 0xFFFF; }
+    public static int depth(long data) { return (int) (data >>> 8) & 0xFF; }
+    public static int generation(long data) { return (int) (data >>> 2) & 63; }
+    public static int bound(long data) { return (int) data & 3; }
+
+    // Permille of sampled slots filled during the current search (UCI "hashfull")
+    public int hashfull() {
+        int samples = (int) Math.min(1000, numEntries);
+        int used = 0;
+        for (int i = 0; i < samples; i++) {
+            long data = chunk(i).getLong(offset(i) + 8);
+            if (data != 0L && generation(data) == generation) used++;
+        }
+        return used * 1000 / samples;
+    }
+
+    // Writes the whole table so a later run can start warm
+    public void save(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+                FileChannel channel = file.getChannel()) {
+            file.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putLong(numEntries).putInt(generation).putInt(scoreOffset).flip();
+            channel.write(header);
+            for (ByteBuffer chunk : chunks) {
+                ByteBuffer view = chunk.duplicate();
+                view.clear();
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+            }
+        }
+    }
+
+    // Loads a saved table, resizing this one to match it
+    // Refuses a table saved for a different score offset than the root
+    // about to be searched
+    public void load(String fileName, int expectedOffset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+                FileChannel channel = file.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a transposition table file: " + fileName);
+            }
+            long entries = header.getLong();
+            int savedGeneration = header.getInt();
+            int savedOffset = header.getInt();
+            if (savedOffset != expectedOffset) {
+                throw new IOException(fileName + " was saved for a root with score offset " + savedOffset
+                    + ", this one has " + expectedOffset + "; its values do not apply here");
+            }
+            if (entries != numEntries) {
+                resize((int) (entries * ENTRY_SIZE / (1024 * 1024)));
+            }
+            for (ByteBuffer chunk : chunks) {
+                ByteBuffer view = chunk.duplicate();
+                view.clear();
+                while (view.hasRemaining()) {
+                    if (channel.read(view) < 0) {
+                        throw new IOException("Truncated transposition table file: " + fileName);
+                    }
+                }
+            }
+            generation = savedGeneration;
+            scoreOffset = savedOffset;
+        }
+    }
+}